@@ -0,0 +1,157 @@
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.IntSupplier;
+import java.util.regex.Pattern;
+
+public class EngineBenchmark {
+    // Micro-benchmarks of the engine methods over a fixed corpus of positions
+    // Every benchmark is warmed up, then measured over several timed iterations, and reported as ops/sec, ns/op and
+    // bytes allocated per op (from the thread's allocation counter, like JMH's gc profiler)
+    // Usage: java EngineBenchmark [name regex] [warmup ms] [iteration ms] [iterations]
+
+    // Corpus of positions, as the sequence of moves that reaches them (cells numbered row * 7 + col)
+    // None of them has a winner yet, and each one is replayed with takeTurn so the side to move is correct
+    private static final String[] POSITION_NAMES = {"opening", "midgame", "nearFull"};
+    private static final int[][] POSITIONS = {
+            {24, 25, 17, 31},
+            {41, 45, 28, 11, 20, 48, 8, 5, 47, 25, 2, 33, 30, 24, 35, 18, 36, 16, 22, 17},
+            {41, 28, 29, 34, 30, 38, 2, 12, 19, 43, 18, 26, 23, 24, 3, 31, 9, 48, 14, 0, 20, 39, 5, 27, 7, 16, 42, 36,
+                    44, 33, 21, 11, 10, 22, 32, 15, 40, 1, 13, 46, 6, 47, 35, 4}
+    };
+    // Deepest minimax benchmark for each position (a depth 5 minimax of the opening takes minutes per op)
+    private static final int[] MAX_MINIMAX_DEPTH = {4, 5, 5};
+
+    // Instance variables
+    // Benchmark names and operations, in the order they run
+    private List<String> names = new ArrayList<>();
+    private List<IntSupplier> operations = new ArrayList<>();
+    // Results of the operations are added here so the JIT can't throw the work away
+    private volatile int sink;
+
+    public static void main(String[] args) {
+        Pattern filter = Pattern.compile(args.length > 0 ? args[0] : ".*");
+        long warmupMs = args.length > 1 ? Long.parseLong(args[1]) : 1000;
+        long iterationMs = args.length > 2 ? Long.parseLong(args[2]) : 1000;
+        int iterations = args.length > 3 ? Integer.parseInt(args[3]) : 3;
+
+        EngineBenchmark benchmark = new EngineBenchmark();
+        benchmark.addBenchmarks();
+        benchmark.run(filter, warmupMs, iterationMs, iterations);
+    }
+
+    // Registers every benchmark of every position
+    private void addBenchmarks() {
+        for (int p = 0; p < POSITIONS.length; p++) {
+            String position = POSITION_NAMES[p];
+            int[] moves = POSITIONS[p];
+            Connect4 game = replay(moves);
+            int[][] board = game.board;
+            BitBoard bitBoard = game.bitBoard;
+            boolean isMaxing = !game.isTurnP1;
+            int lastCell = toBitCell(moves[moves.length - 1]);
+            int lastPlayer = game.isTurnP1 ? 2 : 1;
+
+            add("evaluate(int[][])", position, () -> game.evaluate(board));
+            add("evaluate(BitBoard)", position, () -> game.evaluate(bitBoard));
+            add("gameWinner", position, () -> game.gameWinner(!game.isTurnP1) ? 1 : 0);
+            add("countStreak", position, () -> game.countStreak(board, BitBoard.rowOf(lastCell),
+                    BitBoard.colOf(lastCell), 0, 1, lastPlayer));
+            add("takeTurn x" + moves.length, position, () -> replay(moves).isTurnP1 ? 1 : 0);
+
+            for (int depth = 2; depth <= MAX_MINIMAX_DEPTH[p]; depth++) {
+                int d = depth;
+                add("minimax d" + d, position, () -> game.minimax(bitBoard, d, isMaxing, -1, -1).score);
+            }
+            // The engine runs without a transposition table so every op does the same work
+            Engine engine = new Engine(game, 0);
+            for (int depth = 2; depth <= 5; depth++) {
+                int d = depth;
+                add("Engine.search d" + d, position, () -> engine.search(bitBoard, d, isMaxing).score);
+            }
+        }
+    }
+
+    // Adds a benchmark
+    private void add(String name, String position, IntSupplier operation) {
+        names.add(name + " [" + position + "]");
+        operations.add(operation);
+    }
+
+    // Runs every benchmark whose name matches the filter and prints a result line for each
+    private void run(Pattern filter, long warmupMs, long iterationMs, int iterations) {
+        System.out.printf("%-36s %14s %14s %12s%n", "Benchmark", "ops/s", "ns/op", "B/op");
+        for (int i = 0; i < names.size(); i++) {
+            if (!filter.matcher(names.get(i)).find()) {
+                continue;
+            }
+            IntSupplier operation = operations.get(i);
+            measure(operation, warmupMs);
+
+            long ops = 0;
+            long nanos = 0;
+            long bytes = 0;
+            for (int iteration = 0; iteration < iterations; iteration++) {
+                long[] result = measure(operation, iterationMs);
+                ops += result[0];
+                nanos += result[1];
+                bytes += result[2];
+            }
+            double nsPerOp = (double) nanos / ops;
+            String bytesPerOp = bytes < 0 ? "n/a" : String.format("%.1f", (double) bytes / ops);
+            System.out.printf("%-36s %14.1f %14.1f %12s%n", names.get(i), 1e9 / nsPerOp, nsPerOp, bytesPerOp);
+        }
+    }
+
+    // Runs the operation repeatedly for about the given time (at least once)
+    // Ops run in batches that double in size while a batch takes under 100 microseconds, so reading the clock
+    // doesn't count towards the time of very fast operations
+    // Returns the number of ops, the elapsed nanoseconds, and the bytes allocated (-1 if the JVM can't tell)
+    private long[] measure(IntSupplier operation, long timeMs) {
+        long startBytes = allocatedBytes();
+        long start = System.nanoTime();
+        long end = start + timeMs * 1_000_000;
+        long ops = 0;
+        int batch = 1;
+        long now = start;
+        do {
+            long batchStart = now;
+            int sum = 0;
+            for (int i = 0; i < batch; i++) {
+                sum += operation.getAsInt();
+            }
+            sink += sum;
+            ops += batch;
+            now = System.nanoTime();
+            if (now - batchStart < 100_000) {
+                batch *= 2;
+            }
+        } while (now < end);
+        long endBytes = allocatedBytes();
+        long bytes = startBytes < 0 ? -1 : endBytes - startBytes;
+        return new long[]{ops, now - start, bytes};
+    }
+
+    // Returns the number of bytes allocated so far by the current thread, or -1 if not supported
+    private static long allocatedBytes() {
+        java.lang.management.ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+        if (threads instanceof com.sun.management.ThreadMXBean counter && counter.isThreadAllocatedMemoryEnabled()) {
+            return counter.getThreadAllocatedBytes(Thread.currentThread().threadId());
+        }
+        return -1;
+    }
+
+    // Plays the given moves (row * 7 + col) on a new two player game
+    private static Connect4 replay(int[] moves) {
+        Connect4 game = new Connect4(false);
+        for (int move : moves) {
+            game.takeTurn(move / BitBoard.SIZE, move % BitBoard.SIZE);
+        }
+        return game;
+    }
+
+    // Converts a row * 7 + col cell number to a bitboard bit index
+    private static int toBitCell(int move) {
+        return BitBoard.cell(move / BitBoard.SIZE, move % BitBoard.SIZE);
+    }
+}
@@ -0,0 +1,207 @@
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+public class PerftSuite {
+    // Perft-style regression suite: checks that the search still walks the same tree and finds the same results
+    // For every position of the corpus and every depth, a full-width walk of the game tree (the tree minimax
+    // searches) counts the nodes, the leaves, the leaves where the game is won, and a checksum of every leaf's
+    // evaluation in search order; then minimax and Engine.search are run to the same depth, and must both find the
+    // recorded best move and score (and minimax must visit exactly the walk's nodes and leaves)
+    // Engine.search is then run again on the same engine from the deepest depth down, so the results of deeper
+    // searches are already in its transposition table, and must still find minimax's move and score at every depth
+    // The positions and expected values are checked into bench/perft.txt; a mismatch prints FAIL and the suite exits
+    // with status 1, so an optimisation of takeTurn, evaluate, minimax or the engine can't change results unnoticed
+    // Usage: java PerftSuite [check | update] [suite file] [max depth]
+    //   check (default) compares against the file, update records the current results as the expected values
+
+    // Default location of the suite file
+    public static final String DEFAULT_PATH = "bench/perft.txt";
+
+    // Results of one position at one depth
+    private static class Result {
+        long nodes;
+        long leaves;
+        long wins;
+        long checksum;
+        int best;
+        int score;
+
+        // Returns the values compared between runs, in the order of the suite file
+        String values() {
+            return nodes + " " + leaves + " " + wins + " " + Long.toHexString(checksum) + " " + best + " " + score;
+        }
+    }
+
+    // Instance variables
+    // Game used for evaluations, with the counters of the walk in progress
+    private Connect4 game;
+    private long nodes;
+    private long leaves;
+    private long wins;
+    private long checksum;
+
+    public static void main(String[] args) throws IOException {
+        boolean update = args.length > 0 && args[0].equals("update");
+        String path = args.length > 1 ? args[1] : DEFAULT_PATH;
+        int maxDepth = args.length > 2 ? Integer.parseInt(args[2]) : Engine.MAX_DEPTH;
+        boolean passed = new PerftSuite().run(Path.of(path), update, maxDepth);
+        if (!passed) {
+            System.exit(1);
+        }
+    }
+
+    // Runs every position of the suite file up to its recorded depth (at most maxDepth); returns true if every result
+    // matched (or, when updating, writes the new expected values to the file)
+    public boolean run(Path path, boolean update, int maxDepth) throws IOException {
+        // Positions by name (moves as cells, row * 7 + col), their deepest depth, and the expected values
+        Map<String, int[]> positions = new LinkedHashMap<>();
+        Map<String, Integer> depths = new LinkedHashMap<>();
+        Map<String, String> expected = new LinkedHashMap<>();
+        List<String> header = new ArrayList<>();
+        for (String line : Files.readAllLines(path)) {
+            String[] parts = line.trim().split("\\s+");
+            if (parts[0].equals("position")) {
+                int[] moves = new int[parts.length - 3];
+                for (int i = 0; i < moves.length; i++) {
+                    moves[i] = Integer.parseInt(parts[i + 3]);
+                }
+                positions.put(parts[1], moves);
+                depths.put(parts[1], Integer.parseInt(parts[2]));
+                header.add(line);
+            } else if (parts[0].equals("expect")) {
+                expected.put(parts[1] + " " + parts[2], line.trim().split("\\s+", 4)[3]);
+            } else if (!update || !line.startsWith("# expect")) {
+                header.add(line);
+            }
+        }
+
+        System.out.printf("%-10s %5s %12s %12s %10s %16s %5s %6s %10s %12s  %s%n", "position", "depth", "nodes",
+                "leaves", "wins", "checksum", "best", "score", "ms", "nodes/s", "status");
+        List<String> results = new ArrayList<>();
+        boolean passed = true;
+        for (Map.Entry<String, int[]> position : positions.entrySet()) {
+            String name = position.getKey();
+            game = new Connect4(false);
+            for (int move : position.getValue()) {
+                game.takeTurn(move / BitBoard.SIZE, move % BitBoard.SIZE);
+            }
+            BitBoard board = game.bitBoard;
+            boolean isMaxing = !game.isTurnP1;
+            Engine engine = new Engine(game);
+            int lastDepth = Math.min(depths.get(name), maxDepth);
+            Move[] minimaxBest = new Move[lastDepth + 1];
+
+            for (int depth = 1; depth <= lastDepth; depth++) {
+                Result result = walk(board, depth, isMaxing);
+                // Time and nodes/sec are those of minimax
+                long start = System.nanoTime();
+                Move best = game.minimax(board, depth, isMaxing, -1, -1);
+                double seconds = (System.nanoTime() - start) / 1e9;
+                result.best = best.row * BitBoard.SIZE + best.col;
+                result.score = best.score;
+                minimaxBest[depth] = best;
+                Move engineBest = engine.search(board, depth, isMaxing);
+
+                String status;
+                String want = expected.get(name + " " + depth);
+                if (game.minimaxStats.nodes != result.nodes || game.minimaxStats.leaves != result.leaves) {
+                    status = "FAIL minimax visited " + game.minimaxStats.nodes + " nodes, " + game.minimaxStats.leaves
+                            + " leaves";
+                } else if (engineBest.row != best.row || engineBest.col != best.col
+                        || engineBest.score != best.score) {
+                    status = "FAIL engine found " + (engineBest.row * BitBoard.SIZE + engineBest.col) + " "
+                            + engineBest.score;
+                } else if (update) {
+                    status = "recorded";
+                } else if (want == null) {
+                    status = "no expected values";
+                } else if (!want.equals(result.values())) {
+                    status = "FAIL expected " + want;
+                } else {
+                    status = "ok";
+                }
+                if (status.startsWith("FAIL") || (!update && want == null)) {
+                    passed = false;
+                }
+                results.add("expect " + name + " " + depth + " " + result.values());
+
+                System.out.printf("%-10s %5d %12d %12d %10d %16s %5d %6d %10.1f %12.0f  %s%n", name, depth,
+                        result.nodes, result.leaves, result.wins, Long.toHexString(result.checksum), result.best,
+                        result.score, seconds * 1000, result.nodes / seconds, status);
+            }
+
+            // Deep then shallow: a fixed-depth search must not use table results of a deeper search
+            for (int depth = lastDepth - 1; depth >= 1; depth--) {
+                Move best = minimaxBest[depth];
+                Move engineBest = engine.search(board, depth, isMaxing);
+                String status = "ok";
+                if (engineBest.row != best.row || engineBest.col != best.col || engineBest.score != best.score) {
+                    status = "FAIL engine found " + (engineBest.row * BitBoard.SIZE + engineBest.col) + " "
+                            + engineBest.score + " after deeper searches";
+                    passed = false;
+                }
+                System.out.printf("%-10s %5d %12s %12s %10s %16s %5d %6d %10s %12s  %s%n", name, depth, "", "", "",
+                        "deep first", best.row * BitBoard.SIZE + best.col, best.score, "", "", status);
+            }
+        }
+
+        if (update) {
+            List<String> lines = new ArrayList<>(header);
+            lines.add("# expect <position> <depth> <nodes> <leaves> <wins> <checksum> <best cell> <score>");
+            lines.addAll(results);
+            Files.write(path, lines);
+            System.out.println("Expected values written to " + path);
+            return passed;
+        }
+        System.out.println(passed ? "All results match" : "Some results don't match");
+        return passed;
+    }
+
+    // Walks the full game tree of the given depth and returns its counts (best move and score not filled in)
+    private Result walk(BitBoard board, int depth, boolean isMaxing) {
+        nodes = 0;
+        leaves = 0;
+        wins = 0;
+        checksum = 0;
+        walk(board, depth, isMaxing ? 2 : 1);
+        Result result = new Result();
+        result.nodes = nodes;
+        result.leaves = leaves;
+        result.wins = wins;
+        result.checksum = checksum;
+        return result;
+    }
+
+    // Visits every node of the tree minimax searches: a node is a leaf if the game is won, neither player can win any
+    // more (an exact draw, scored 0) or the depth is reached, and otherwise every empty cell is played, lowest bit
+    // index first
+    private void walk(BitBoard board, int depth, int player) {
+        nodes++;
+        int score = game.evaluate(board);
+        boolean won = score == 1000 || score == -1000;
+        if (!won && board.isDead(game.WIN_LENGTH)) {
+            score = 0;
+        }
+        if (won || depth == 0 || board.isDead(game.WIN_LENGTH)) {
+            leaves++;
+            if (score == 1000 || score == -1000) {
+                wins++;
+            }
+            checksum = checksum * 31 + score;
+            return;
+        }
+        long empty = board.empty();
+        while (empty != 0) {
+            int cell = Long.numberOfTrailingZeros(empty);
+            empty &= empty - 1;
+            board.place(cell, player);
+            walk(board, depth - 1, 3 - player);
+            board.remove(cell, player);
+        }
+    }
+}
@@ -0,0 +1,215 @@
+import javax.sound.sampled.AudioFormat;
+import javax.sound.sampled.AudioInputStream;
+import javax.sound.sampled.AudioSystem;
+import javax.sound.sampled.LineUnavailableException;
+import javax.sound.sampled.SourceDataLine;
+import javax.sound.sampled.UnsupportedAudioFileException;
+import java.io.File;
+import java.io.IOException;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+public class AudioPlayer {
+    // Plays looping music tracks on a background thread, through a SourceDataLine with a small buffer
+    // playMusic only hands the track over to the playback thread, so it returns right away (no disk access or decoding
+    // on the caller's thread), and the switch is heard within one buffer
+    // Short tracks are decoded once and kept in memory, in a cache holding at most MAX_CACHE_BYTES of audio (least
+    // recently played tracks are dropped first), so playing them again costs nothing; longer tracks are streamed from
+    // disk a buffer at a time instead, so they are never held fully decoded on the heap
+
+    // Most decoded audio kept in memory at once
+    public static final long MAX_CACHE_BYTES = 16L * 1024 * 1024;
+    // Tracks whose decoded audio is larger than this are streamed from disk instead of cached
+    public static final long MAX_TRACK_BYTES = 4L * 1024 * 1024;
+    // Bytes written to the line at once (about 50 ms of CD quality audio), and the line's own buffer
+    private static final int CHUNK_BYTES = 8 * 1024;
+    private static final int LINE_BUFFER_BYTES = 2 * CHUNK_BYTES;
+
+    // Decoded audio of a short track
+    private static class Track {
+        AudioFormat format;
+        byte[] data;
+
+        Track(AudioFormat format, byte[] data) {
+            this.format = format;
+            this.data = data;
+        }
+    }
+
+    // Instance variables
+    // Decoded tracks by file path, least recently played first, and their total size
+    private Map<String, Track> cache = new LinkedHashMap<>(16, 0.75f, true);
+    private long cachedBytes;
+    // Track requested by the last call to playMusic (null for silence), and the number of calls so far; the playback
+    // thread keeps playing a track until the number changes
+    private final Object lock = new Object();
+    private String requested;
+    private volatile long requestNumber;
+    // Playback thread (started by the first playMusic call), and the line it writes to
+    private Thread playbackThread;
+    private SourceDataLine line;
+
+    // Starts playing the given track in a loop, replacing the current one (null stops the music)
+    public void playMusic(String filePath) {
+        synchronized (lock) {
+            requested = filePath;
+            requestNumber++;
+            lock.notifyAll();
+            if (playbackThread == null) {
+                playbackThread = new Thread(this::playRequests, "audio-playback");
+                playbackThread.setDaemon(true);
+                playbackThread.start();
+            }
+        }
+    }
+
+    // Decodes the given tracks into the cache on a background thread, so they start instantly when played
+    public void preload(String... filePaths) {
+        Thread preloader = new Thread(() -> {
+            for (String filePath : filePaths) {
+                try {
+                    cachedTrack(filePath);
+                } catch (UnsupportedAudioFileException | IOException e) {
+                    e.printStackTrace();
+                }
+            }
+        }, "audio-preload");
+        preloader.setDaemon(true);
+        preloader.start();
+    }
+
+    // Playback thread loop: plays every requested track until the next request
+    private void playRequests() {
+        long handled = 0;
+        while (true) {
+            String filePath;
+            synchronized (lock) {
+                while (requestNumber == handled) {
+                    try {
+                        lock.wait();
+                    } catch (InterruptedException e) {
+                        return;
+                    }
+                }
+                handled = requestNumber;
+                filePath = requested;
+            }
+            // Drop what is still queued from the previous track, so the switch is immediate
+            if (line != null) {
+                line.flush();
+            }
+            if (filePath == null) {
+                continue;
+            }
+            try {
+                Track track = cachedTrack(filePath);
+                if (track != null) {
+                    loopTrack(track, handled);
+                } else {
+                    streamTrack(filePath, handled);
+                }
+            } catch (UnsupportedAudioFileException | IOException | LineUnavailableException
+                     | IllegalArgumentException e) {
+                // IllegalArgumentException: no line supports the track's format (or there is no sound device)
+                e.printStackTrace();
+            }
+        }
+    }
+
+    // Plays decoded audio in a loop until another track is requested
+    private void loopTrack(Track track, long request) throws LineUnavailableException {
+        openLine(track.format);
+        int chunk = CHUNK_BYTES - CHUNK_BYTES % track.format.getFrameSize();
+        int position = 0;
+        while (requestNumber == request && track.data.length > 0) {
+            int length = Math.min(chunk, track.data.length - position);
+            line.write(track.data, position, length);
+            position += length;
+            if (position == track.data.length) {
+                position = 0;
+            }
+        }
+    }
+
+    // Plays a track from disk in a loop, one chunk at a time, until another track is requested
+    private void streamTrack(String filePath, long request)
+            throws UnsupportedAudioFileException, IOException, LineUnavailableException {
+        byte[] buffer = new byte[CHUNK_BYTES];
+        while (requestNumber == request) {
+            try (AudioInputStream in = openPcm(filePath)) {
+                openLine(in.getFormat());
+                int frameSize = in.getFormat().getFrameSize();
+                int chunk = CHUNK_BYTES - CHUNK_BYTES % frameSize;
+                int length;
+                int total = 0;
+                while (requestNumber == request && (length = in.readNBytes(buffer, 0, chunk)) > 0) {
+                    line.write(buffer, 0, length - length % frameSize);
+                    total += length;
+                }
+                // Don't spin on a track without any audio in it
+                if (total == 0) {
+                    return;
+                }
+            }
+        }
+    }
+
+    // Returns the decoded track, decoding and caching it if needed, or null if it is too long to cache
+    private Track cachedTrack(String filePath) throws UnsupportedAudioFileException, IOException {
+        synchronized (cache) {
+            Track track = cache.get(filePath);
+            if (track != null) {
+                return track;
+            }
+        }
+        try (AudioInputStream in = openPcm(filePath)) {
+            long frames = in.getFrameLength();
+            if (frames == AudioSystem.NOT_SPECIFIED || frames * in.getFormat().getFrameSize() > MAX_TRACK_BYTES) {
+                return null;
+            }
+            Track track = new Track(in.getFormat(), in.readAllBytes());
+            synchronized (cache) {
+                if (cache.put(filePath, track) == null) {
+                    cachedBytes += track.data.length;
+                }
+                // Drop the least recently played tracks until the cache fits
+                Iterator<Track> tracks = cache.values().iterator();
+                while (cachedBytes > MAX_CACHE_BYTES && tracks.hasNext()) {
+                    Track oldest = tracks.next();
+                    if (oldest != track) {
+                        cachedBytes -= oldest.data.length;
+                        tracks.remove();
+                    }
+                }
+            }
+            return track;
+        }
+    }
+
+    // Opens the audio file, converted to 16 bit PCM if it is compressed
+    private static AudioInputStream openPcm(String filePath) throws UnsupportedAudioFileException, IOException {
+        AudioInputStream in = AudioSystem.getAudioInputStream(new File(filePath));
+        AudioFormat format = in.getFormat();
+        if (format.getEncoding() == AudioFormat.Encoding.PCM_SIGNED
+                || format.getEncoding() == AudioFormat.Encoding.PCM_UNSIGNED) {
+            return in;
+        }
+        AudioFormat pcm = new AudioFormat(AudioFormat.Encoding.PCM_SIGNED, format.getSampleRate(), 16,
+                format.getChannels(), format.getChannels() * 2, format.getSampleRate(), false);
+        return AudioSystem.getAudioInputStream(pcm, in);
+    }
+
+    // Makes sure the line is open and started with the given format, reopening it if the format changed
+    private void openLine(AudioFormat format) throws LineUnavailableException {
+        if (line != null && !line.getFormat().matches(format)) {
+            line.close();
+            line = null;
+        }
+        if (line == null) {
+            line = AudioSystem.getSourceDataLine(format);
+            line.open(format, LINE_BUFFER_BYTES - LINE_BUFFER_BYTES % format.getFrameSize());
+            line.start();
+        }
+    }
+}
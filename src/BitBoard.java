@@ -0,0 +1,259 @@
+import java.util.Random;
+
+public class BitBoard {
+    // Bitboard representation of the 7x7 game board
+    // Each player's pieces are stored in a single long, with bit (row * STRIDE + col) set if the player has a piece there
+    // Column 7 of every row and every bit above row 6 are never set (guard bits), so shifting a whole board in any
+    // direction never wraps a line of pieces from one row onto the next
+
+    // Number of rows and columns of available spaces on the board
+    public static final int SIZE = 7;
+    // Number of bits used per row (one extra guard column)
+    public static final int STRIDE = SIZE + 1;
+    // Mask with a bit set for every playable cell (49 bits)
+    public static final long PLAYABLE = buildPlayableMask();
+    // Bit shifts for the four line directions: horizontal, vertical, diagonal down-right, diagonal down-left
+    public static final int[] SHIFTS = {1, STRIDE, STRIDE + 1, STRIDE - 1};
+    // Random Zobrist keys for each [player][cell]; the hash of a board is the XOR of the keys of all its pieces
+    public static final long[][] ZOBRIST = buildZobristKeys();
+    // Number of symmetries of the square board (4 rotations, each one optionally mirrored), symmetry 0 is the identity
+    public static final int SYMMETRIES = 8;
+    // Cell each cell moves to under each symmetry, [symmetry][cell], and the inverse mapping
+    public static final int[][] SYMMETRY_CELLS = buildSymmetryCells();
+    public static final int[][] INVERSE_SYMMETRY_CELLS = buildInverseSymmetryCells();
+
+    // Pieces of each player, indexed by player number (index 0 is unused so 1 = player 1, 2 = player 2)
+    public final long[] pieces = new long[3];
+    // Zobrist hash of the pieces on the board, updated every time a piece is placed or removed
+    public long hash;
+    // Zobrist hash of the board transformed by each symmetry (symmetryHashes[0] == hash), also kept up to date, so
+    // the canonical hash of a position is always 8 compares away
+    public final long[] symmetryHashes = new long[SYMMETRIES];
+
+    // Returns the bit index of the given row and column
+    public static int cell(int row, int col) {
+        return row * STRIDE + col;
+    }
+
+    // Returns the row of the given bit index
+    public static int rowOf(int cell) {
+        return cell / STRIDE;
+    }
+
+    // Returns the column of the given bit index
+    public static int colOf(int cell) {
+        return cell % STRIDE;
+    }
+
+    // Builds a bitboard from a 2D array board (0 = empty, 1 = player 1, 2 = player 2)
+    public static BitBoard fromArray(int[][] board) {
+        BitBoard bitBoard = new BitBoard();
+        for (int i = 0; i < SIZE; i++) {
+            for (int j = 0; j < SIZE; j++) {
+                if (board[i][j] != 0) {
+                    bitBoard.place(cell(i, j), board[i][j]);
+                }
+            }
+        }
+        return bitBoard;
+    }
+
+    // Returns the player occupying the given cell, or 0 if it is empty
+    public int get(int cell) {
+        long bit = 1L << cell;
+        if ((pieces[1] & bit) != 0) {
+            return 1;
+        }
+        if ((pieces[2] & bit) != 0) {
+            return 2;
+        }
+        return 0;
+    }
+
+    // Puts a piece of the given player on the given cell
+    public void place(int cell, int player) {
+        pieces[player] |= 1L << cell;
+        hash ^= ZOBRIST[player][cell];
+        updateSymmetryHashes(cell, player);
+    }
+
+    // Removes the piece of the given player from the given cell
+    public void remove(int cell, int player) {
+        pieces[player] &= ~(1L << cell);
+        hash ^= ZOBRIST[player][cell];
+        updateSymmetryHashes(cell, player);
+    }
+
+    // Toggles a piece of the given player on the given cell in the hash of every symmetry
+    private void updateSymmetryHashes(int cell, int player) {
+        long[] keys = ZOBRIST[player];
+        for (int symmetry = 0; symmetry < SYMMETRIES; symmetry++) {
+            symmetryHashes[symmetry] ^= keys[SYMMETRY_CELLS[symmetry][cell]];
+        }
+    }
+
+    // Returns the symmetry whose transformed board has the smallest hash (the lowest such symmetry on a tie)
+    // Every position of a symmetry class has the same canonical hash, so caches keyed by it store the class once
+    public int canonicalSymmetry() {
+        int best = 0;
+        for (int symmetry = 1; symmetry < SYMMETRIES; symmetry++) {
+            if (symmetryHashes[symmetry] < symmetryHashes[best]) {
+                best = symmetry;
+            }
+        }
+        return best;
+    }
+
+    // Returns the hash shared by every rotation and reflection of this position
+    public long canonicalHash() {
+        return symmetryHashes[canonicalSymmetry()];
+    }
+
+    // Returns a mask of all empty playable cells
+    public long empty() {
+        return PLAYABLE & ~(pieces[1] | pieces[2]);
+    }
+
+    // Returns true if the board has no empty cells left
+    public boolean isFull() {
+        return empty() == 0;
+    }
+
+    // Returns true if the given player has a streak of at least winLength pieces anywhere on the board
+    public boolean hasWin(int player, int winLength) {
+        return hasWin(pieces[player], winLength);
+    }
+
+    // Returns true if the given set of pieces contains a streak of at least winLength in any direction
+    // For each direction, AND-ing the board with itself shifted 1, 2, ... winLength - 1 cells along the line leaves
+    // a bit set only where a full streak starts
+    public static boolean hasWin(long bits, int winLength) {
+        for (int shift : SHIFTS) {
+            if (streakStarts(bits, shift, winLength) != 0) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    // Returns true if the given player can still complete a streak of winLength somewhere: some winLength cells in a
+    // row hold no piece of the opponent (a streak of the non-opponent cells, so the guard bits still break lines)
+    public boolean hasOpenLine(int player, int winLength) {
+        return hasWin(PLAYABLE & ~pieces[3 - player], winLength);
+    }
+
+    // Returns true if neither player can complete a streak of winLength any more, so the game is a draw whatever is
+    // played (a full board without a winner included)
+    public boolean isDead(int winLength) {
+        return !hasOpenLine(1, winLength) && !hasOpenLine(2, winLength);
+    }
+
+    // Returns a mask of the cells where a streak of at least length pieces starts in the given direction
+    // Uses doubling so a streak of length n only needs about log2(n) shifts
+    public static long streakStarts(long bits, int shift, int length) {
+        long m = bits;
+        int covered = 1;
+        while (covered < length) {
+            int step = Math.min(covered, length - covered);
+            m &= m >>> (shift * step);
+            covered += step;
+        }
+        return m;
+    }
+
+    // Returns a mask of the empty cells that would complete a streak of winLength for the given pieces
+    // For every direction and every position of a single gap inside a window of winLength cells, the window's other
+    // cells must all be the player's pieces; any window crossing from one row to the next passes through a guard
+    // cell, which is never a piece or empty, so no false windows are found
+    public static long winningCells(long bits, long empty, int winLength) {
+        long cells = 0;
+        for (int shift : SHIFTS) {
+            for (int gap = 0; gap < winLength; gap++) {
+                long window = -1L;
+                for (int i = 0; i < winLength; i++) {
+                    if (i != gap) {
+                        window &= bits >>> (shift * i);
+                    }
+                }
+                cells |= window << (shift * gap);
+            }
+        }
+        return cells & empty;
+    }
+
+    // Returns a mask of the playable cells next to (in any of the 8 directions) at least one of the given pieces
+    public static long neighbors(long bits) {
+        long cells = 0;
+        for (int shift : SHIFTS) {
+            cells |= (bits << shift) | (bits >>> shift);
+        }
+        return cells & PLAYABLE;
+    }
+
+    // Returns a copy of this bitboard
+    public BitBoard copy() {
+        BitBoard copy = new BitBoard();
+        copy.copyFrom(this);
+        return copy;
+    }
+
+    // Makes this bitboard a copy of the given one, without allocating
+    public void copyFrom(BitBoard other) {
+        pieces[1] = other.pieces[1];
+        pieces[2] = other.pieces[2];
+        hash = other.hash;
+        System.arraycopy(other.symmetryHashes, 0, symmetryHashes, 0, SYMMETRIES);
+    }
+
+    // Builds the mask of playable cells
+    private static long buildPlayableMask() {
+        long mask = 0;
+        for (int i = 0; i < SIZE; i++) {
+            mask |= ((1L << SIZE) - 1) << (i * STRIDE);
+        }
+        return mask;
+    }
+
+    // Builds the cell mapping of each symmetry: identity, the 3 rotations, then the 4 reflections (left-right,
+    // up-down, main diagonal, anti-diagonal); guard cells map to themselves
+    private static int[][] buildSymmetryCells() {
+        int n = SIZE - 1;
+        int[][] cells = new int[SYMMETRIES][64];
+        for (int symmetry = 0; symmetry < SYMMETRIES; symmetry++) {
+            for (int cell = 0; cell < 64; cell++) {
+                cells[symmetry][cell] = cell;
+            }
+            for (int row = 0; row < SIZE; row++) {
+                for (int col = 0; col < SIZE; col++) {
+                    int[][] targets = {{row, col}, {col, n - row}, {n - row, n - col}, {n - col, row},
+                            {row, n - col}, {n - row, col}, {col, row}, {n - col, n - row}};
+                    cells[symmetry][cell(row, col)] = cell(targets[symmetry][0], targets[symmetry][1]);
+                }
+            }
+        }
+        return cells;
+    }
+
+    // Builds the inverse of every symmetry's cell mapping
+    private static int[][] buildInverseSymmetryCells() {
+        int[][] inverse = new int[SYMMETRIES][64];
+        for (int symmetry = 0; symmetry < SYMMETRIES; symmetry++) {
+            for (int cell = 0; cell < 64; cell++) {
+                inverse[symmetry][SYMMETRY_CELLS[symmetry][cell]] = cell;
+            }
+        }
+        return inverse;
+    }
+
+    // Builds the Zobrist keys from a fixed seed, so hashes are the same in every run
+    private static long[][] buildZobristKeys() {
+        Random random = new Random(0x5EED_C0FFEEL);
+        long[][] keys = new long[3][64];
+        for (int player = 1; player <= 2; player++) {
+            for (int cell = 0; cell < 64; cell++) {
+                keys[player][cell] = random.nextLong();
+            }
+        }
+        return keys;
+    }
+}
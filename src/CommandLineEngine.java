@@ -0,0 +1,412 @@
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.PrintWriter;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.BiConsumer;
+
+public class CommandLineEngine {
+    // Headless engine speaking a line-based protocol over stdin/stdout, for tournament managers and scripts that run
+    // one engine process per game
+    // Startup is kept short: only the engine classes are loaded (no AWT, Swing or sound), the JMX MBean of
+    // EngineMetrics isn't registered unless -Dconnect4.registerMBean=true is given, a small opening book is read
+    // rather than memory-mapped, and the replies sent on every move are built with StringBuilder, since the first +
+    // concatenation in a JVM spins up method handles for tens of ms
+    // Usage: java -XX:+AutoCreateSharedArchive -XX:SharedArchiveFile=engine.jsa -cp engine.jar CommandLineEngine
+    // where engine.jar holds the compiled classes (jar cf engine.jar -C <classes dir> .); with those flags (JDK 19+)
+    // the first run dumps every class it loaded into an AppCDS archive, and later runs map the classes from it instead
+    // of loading and verifying them, so starting the JVM and playing the first move takes well under 100 ms; the
+    // archive is made again whenever the JDK or the jar changes (class directories can't be archived, hence the jar)
+    //
+    // Protocol (one command per line, commands and option names in any case; cells are numbered row * size + col,
+    // size being 7 unless set with SETOPTION SIZE):
+    //   ISREADY                           -> READYOK, once every earlier command has been handled
+    //   POSITION STARTPOS [MOVES <cell>...] sets the position to search: the moves played from the empty board,
+    //                                        player 1 first
+    //   POSITION BOARD <size*size digits> sets the position from its cells, row by row (0 = empty, 1 = player 1,
+    //                                        2 = player 2, as GameServer's BOARD), the side to move from the counts
+    //   SETOPTION <name> <value>          sets an option: DEPTH (fixed depth, 0 = timed), TIME (ms per move), HASH
+    //                                        (transposition table MB), THREADS, BOOK (ON or OFF), SIZE (rows and
+    //                                        columns of the board) and WINLENGTH (streak needed to win); SIZE and
+    //                                        WINLENGTH also reset the position to the empty board
+    //   GO [DEPTH <n> | TIME <ms> | INFINITE]
+    //                                     -> searches on a background thread, one depth after the other (up to the
+    //                                        given depth for GO DEPTH); every finished depth is reported as
+    //                                        INFO DEPTH <d> SCORE <score> NODES <n> TIME <ms> PV <cells>, then the
+    //                                        search ends with INFO SOURCE <source> DEPTH <d> SCORE <score> NODES <n>
+    //                                        TIME <ms> and BESTMOVE <cell>
+    //   STOP                              stops the running search, which then sends the BESTMOVE of its deepest
+    //                                        finished depth; a GO INFINITE search sends its BESTMOVE only on STOP,
+    //                                        even if it finished earlier (a forced win found, or a book move)
+    //   QUIT                              stops the running search and exits
+    //   anything invalid                  -> ERROR <reason>
+    // POSITION, GO and the HASH, THREADS and BOOK options are refused while a search runs: wait for its BESTMOVE (or
+    // send STOP first)
+    // Scores are from player 2's point of view, as everywhere else (1000 = player 2 wins, -1000 = player 1 wins)
+    // Any game other than the standard 7x7 board with 4 in a row (e.g. SIZE 19 and WINLENGTH 5) is searched by
+    // GridEngine: it doesn't use the book or helper threads, sends no INFO DEPTH lines, and scores a win as
+    // GridBoard.WIN_SCORE
+
+    // Default time per move
+    public static final long DEFAULT_TIME_MS = 1000;
+    // Time given to GO INFINITE searches, which run until STOP
+    private static final long INFINITE_MS = Long.MAX_VALUE / 4;
+
+    // Instance variables
+    // Where replies are written
+    private PrintWriter out;
+    // Options
+    private int depth;
+    private long timeMs = DEFAULT_TIME_MS;
+    private int hashMb = Engine.DEFAULT_HASH_MB;
+    private int threads = 1;
+    private boolean useBook = true;
+    private int size = BitBoard.SIZE;
+    private int winLength = Connect4.DEFAULT_WIN_LENGTH;
+    // Engines for the standard game and for the others (created when first needed, and again after the hash size
+    // changes), and the opening book
+    private Engine engine;
+    private GridEngine gridEngine;
+    private OpeningBook book;
+    // Position to search (its cells, and also its bitboard in the standard game), and whether player 2 is to move
+    private int[][] cells = new int[BitBoard.SIZE][BitBoard.SIZE];
+    private BitBoard board = new BitBoard();
+    private boolean isMaxing;
+    // Running or last search (done once its reply is sent), and what a GO INFINITE search waits for before replying
+    // (completed by STOP)
+    private CompletableFuture<Move> search;
+    private CompletableFuture<Void> stopReceived;
+
+    public CommandLineEngine(PrintWriter out) {
+        this.out = out;
+    }
+
+    public static void main(String[] args) throws IOException {
+        // Registering the MBean loads the whole JMX stack, which takes longer than a short search
+        if (System.getProperty(EngineMetrics.REGISTER_PROPERTY) == null) {
+            System.setProperty(EngineMetrics.REGISTER_PROPERTY, "false");
+        }
+        EngineMetrics.register();
+        BufferedReader in = new BufferedReader(new InputStreamReader(System.in, StandardCharsets.US_ASCII));
+        new CommandLineEngine(new PrintWriter(System.out, false, StandardCharsets.US_ASCII)).run(in);
+    }
+
+    // Handles commands until QUIT or the end of the input
+    public void run(BufferedReader in) throws IOException {
+        String line;
+        while ((line = in.readLine()) != null) {
+            String[] parts = line.trim().split("\\s+");
+            String command = parts[0].toUpperCase();
+            if (command.isEmpty()) {
+                continue;
+            }
+            if (command.equals("QUIT")) {
+                break;
+            }
+            try {
+                switch (command) {
+                    case "ISREADY" -> print("READYOK");
+                    case "POSITION" -> setPosition(parts);
+                    case "SETOPTION" -> setOption(parts);
+                    case "GO" -> go(parts);
+                    case "STOP" -> stop();
+                    default -> print("ERROR unknown command");
+                }
+            } catch (ArrayIndexOutOfBoundsException e) {
+                print("ERROR missing argument");
+            } catch (IllegalArgumentException e) {
+                print("ERROR " + e.getMessage());
+            }
+        }
+        stop();
+        if (search != null) {
+            search.exceptionally(error -> null).join();
+        }
+    }
+
+    // Sets the position to search from a POSITION command
+    private void setPosition(String[] parts) {
+        checkIdle();
+        String kind = parts[1].toUpperCase();
+        if (kind.equals("STARTPOS")) {
+            Connect4 game = new Connect4(false, size, winLength);
+            if (parts.length > 2 && !parts[2].equalsIgnoreCase("MOVES")) {
+                throw new IllegalArgumentException("usage: POSITION STARTPOS [MOVES <cell>...]");
+            }
+            for (int i = 3; i < parts.length; i++) {
+                int cell = Integer.parseInt(parts[i]);
+                if (game.gameOver || !game.takeTurn(cell / size, cell % size)) {
+                    throw new IllegalArgumentException("illegal move " + parts[i]);
+                }
+            }
+            setCells(game.board, !game.isTurnP1);
+        } else if (kind.equals("BOARD")) {
+            String digits = parts[2];
+            int[][] grid = new int[size][size];
+            int[] counts = new int[3];
+            for (int i = 0; i < digits.length(); i++) {
+                int player = digits.charAt(i) - '0';
+                if (digits.length() != size * size || player < 0 || player > 2) {
+                    throw new IllegalArgumentException("a board is " + size * size + " digits 0 to 2");
+                }
+                grid[i / size][i % size] = player;
+                counts[player]++;
+            }
+            // Player 1 moves first, so they have as many pieces as player 2 or one more
+            if (counts[1] != counts[2] && counts[1] != counts[2] + 1) {
+                throw new IllegalArgumentException("piece counts can't be reached by alternating moves");
+            }
+            setCells(grid, counts[1] > counts[2]);
+        } else {
+            throw new IllegalArgumentException("usage: POSITION STARTPOS [MOVES <cell>...] or POSITION BOARD <cells>");
+        }
+    }
+
+    // Makes the given cells (and side to move) the position to search
+    private void setCells(int[][] grid, boolean isMaxing) {
+        cells = grid;
+        board = isStandard() ? BitBoard.fromArray(grid) : null;
+        this.isMaxing = isMaxing;
+    }
+
+    // Returns true for the standard game, searched by Engine (7x7 board, 4 in a row)
+    private boolean isStandard() {
+        return size == BitBoard.SIZE && winLength == Connect4.DEFAULT_WIN_LENGTH;
+    }
+
+    // Sets an option from a SETOPTION command
+    private void setOption(String[] parts) {
+        String name = parts[1].toUpperCase();
+        String value = parts[2];
+        switch (name) {
+            case "DEPTH" -> depth = Math.max(0, Integer.parseInt(value));
+            case "TIME" -> timeMs = Math.max(1, Long.parseLong(value));
+            case "HASH" -> {
+                checkIdle();
+                hashMb = Math.max(0, Integer.parseInt(value));
+                // The table is allocated with the engine, so the next search starts a new one
+                if (engine != null) {
+                    engine.shutdown();
+                    engine = null;
+                }
+                gridEngine = null;
+            }
+            case "THREADS" -> {
+                checkIdle();
+                threads = Math.max(1, Integer.parseInt(value));
+                if (engine != null) {
+                    engine.setThreads(threads);
+                }
+            }
+            case "BOOK" -> {
+                checkIdle();
+                useBook = value.equalsIgnoreCase("ON") || value.equalsIgnoreCase("TRUE");
+                if (engine != null) {
+                    engine.setOpeningBook(useBook ? book() : null);
+                }
+            }
+            case "SIZE", "WINLENGTH" -> {
+                checkIdle();
+                int number = Integer.parseInt(value);
+                if (number < 2 || number > 64) {
+                    throw new IllegalArgumentException(name + " must be between 2 and 64");
+                }
+                if (name.equals("SIZE")) {
+                    size = number;
+                } else {
+                    winLength = number;
+                }
+                setCells(new int[size][size], false);
+            }
+            default -> throw new IllegalArgumentException("unknown option " + parts[1]);
+        }
+    }
+
+    // Starts searching the position from a GO command; the reply is sent when the search finishes
+    private void go(String[] parts) {
+        checkIdle();
+        GridBoard gridBoard = isStandard() ? null : GridBoard.fromArray(new Connect4(false, size, winLength), cells);
+        if (isStandard() ? board.hasWin(1, winLength) || board.hasWin(2, winLength) || board.isDead(winLength)
+                : gridBoard.winner() != 0 || gridBoard.isFull()) {
+            throw new IllegalArgumentException("game over");
+        }
+        int goDepth = depth;
+        long goTimeMs = timeMs;
+        boolean infinite = false;
+        for (int i = 1; i < parts.length; i++) {
+            switch (parts[i].toUpperCase()) {
+                case "DEPTH" -> {
+                    goDepth = Math.max(1, Integer.parseInt(parts[++i]));
+                    infinite = false;
+                }
+                case "TIME" -> {
+                    goTimeMs = Math.max(1, Long.parseLong(parts[++i]));
+                    goDepth = 0;
+                    infinite = false;
+                }
+                case "INFINITE" -> {
+                    goTimeMs = INFINITE_MS;
+                    goDepth = 0;
+                    infinite = true;
+                }
+                default -> throw new IllegalArgumentException("usage: GO [DEPTH <n> | TIME <ms> | INFINITE]");
+            }
+        }
+
+        long start = System.nanoTime();
+        BiConsumer<Move, Throwable> finish;
+        if (isStandard()) {
+            Engine searcher = engine();
+            BitBoard searchBoard = board.copy();
+            boolean searchIsMaxing = isMaxing;
+            SearchListener listener = (finishedDepth, bestMove, nodes) ->
+                    printDepth(searcher, finishedDepth, bestMove, nodes, start);
+            // A fixed-depth search deepens one depth at a time too, so a STOP still leaves a finished depth to play
+            if (goDepth > 0) {
+                search = searcher.searchDepthAsync(searchBoard, goDepth, searchIsMaxing, listener);
+            } else {
+                search = searcher.searchAsync(searchBoard, goTimeMs, searchIsMaxing, listener);
+            }
+            finish = (move, error) -> finishSearch(searcher, searchBoard, move, error);
+        } else {
+            GridEngine searcher = gridEngine();
+            if (goDepth > 0) {
+                search = searcher.searchAsync(gridBoard, INFINITE_MS, goDepth, isMaxing);
+            } else {
+                search = searcher.searchAsync(gridBoard, goTimeMs, GridEngine.MAX_DEPTH, isMaxing);
+            }
+            finish = (move, error) -> finishGridSearch(searcher, gridBoard, move, error, start);
+        }
+        // An infinite search keeps its result until STOP
+        stopReceived = null;
+        if (infinite) {
+            stopReceived = new CompletableFuture<>();
+            search = search.thenCombine(stopReceived, (move, ignored) -> move);
+        }
+        // The search only counts as finished once its BESTMOVE is sent
+        search = search.whenComplete(finish);
+    }
+
+    // Stops the running search, if any (it still sends its BESTMOVE)
+    private void stop() {
+        if (search != null && !search.isDone()) {
+            if (engine != null) {
+                engine.cancel();
+            }
+            if (gridEngine != null) {
+                gridEngine.cancel();
+            }
+            if (stopReceived != null) {
+                stopReceived.complete(null);
+            }
+        }
+    }
+
+    // Sends the INFO line of a finished depth
+    private void printDepth(Engine searcher, int finishedDepth, Move bestMove, long nodes, long start) {
+        StringBuilder line = new StringBuilder();
+        line.append("INFO DEPTH ").append(finishedDepth).append(" SCORE ").append(bestMove.score)
+                .append(" NODES ").append(nodes).append(" TIME ").append((System.nanoTime() - start) / 1_000_000)
+                .append(" PV");
+        for (int cell : searcher.principalVariation()) {
+            line.append(' ').append(BitBoard.rowOf(cell) * BitBoard.SIZE + BitBoard.colOf(cell));
+        }
+        print(line.toString());
+    }
+
+    // Sends the summary and the best move of a finished search
+    private void finishSearch(Engine searcher, BitBoard searchBoard, Move move, Throwable error) {
+        if (error != null) {
+            error.printStackTrace();
+        }
+        int cell;
+        if (move != null && move.row != -1) {
+            cell = move.row * BitBoard.SIZE + move.col;
+        } else {
+            // Stopped before the first depth finished: play the first empty cell
+            int bit = Long.numberOfTrailingZeros(searchBoard.empty());
+            cell = BitBoard.rowOf(bit) * BitBoard.SIZE + BitBoard.colOf(bit);
+        }
+        SearchStats stats = searcher.lastStats;
+        if (stats != null) {
+            StringBuilder line = new StringBuilder();
+            line.append("INFO SOURCE ").append(stats.source).append(" DEPTH ").append(stats.depth)
+                    .append(" SCORE ").append(move != null ? move.score : 0).append(" NODES ").append(stats.nodes)
+                    .append(" TIME ").append(stats.nanos / 1_000_000);
+            print(line.toString());
+        }
+        print(new StringBuilder("BESTMOVE ").append(cell).toString());
+    }
+
+    // Sends the summary and the best move of a finished search of a game other than the standard one
+    private void finishGridSearch(GridEngine searcher, GridBoard searchBoard, Move move, Throwable error,
+                                  long start) {
+        if (error != null) {
+            error.printStackTrace();
+        }
+        int cell;
+        if (move != null) {
+            cell = move.row * size + move.col;
+        } else {
+            // Stopped before the first depth finished: play the first empty cell
+            cell = 0;
+            while (searchBoard.cells[searchBoard.index(cell / size, cell % size)] != 0) {
+                cell++;
+            }
+        }
+        StringBuilder line = new StringBuilder();
+        line.append("INFO SOURCE grid DEPTH ").append(searcher.completedDepth)
+                .append(" SCORE ").append(move != null ? move.score : 0).append(" NODES ").append(searcher.nodes)
+                .append(" TIME ").append((System.nanoTime() - start) / 1_000_000);
+        print(line.toString());
+        print(new StringBuilder("BESTMOVE ").append(cell).toString());
+    }
+
+    // Returns the engine, creating it with the current options if needed
+    private Engine engine() {
+        if (engine == null) {
+            engine = new Engine(new Connect4(false), hashMb);
+            engine.setThreads(threads);
+            engine.setOpeningBook(useBook ? book() : null);
+        }
+        return engine;
+    }
+
+    // Returns the engine for games other than the standard one, creating it if needed
+    private GridEngine gridEngine() {
+        if (gridEngine == null) {
+            gridEngine = new GridEngine(hashMb);
+        }
+        return gridEngine;
+    }
+
+    // Returns the opening book, opening it the first time, or null if there is none
+    private OpeningBook book() {
+        if (book == null && new File(OpeningBook.DEFAULT_PATH).exists()) {
+            try {
+                // A small book is read rather than mapped, which is quicker for a process that plays one game
+                book = OpeningBook.open(OpeningBook.DEFAULT_PATH, true);
+            } catch (IOException e) {
+                e.printStackTrace();
+            }
+        }
+        return book;
+    }
+
+    // Refuses commands that can't be handled while a search is running
+    private void checkIdle() {
+        if (search != null && !search.isDone()) {
+            throw new IllegalArgumentException("search running, send STOP first");
+        }
+    }
+
+    // Sends one reply line right away
+    private void print(String line) {
+        synchronized (out) {
+            out.println(line);
+            out.flush();
+        }
+    }
+}
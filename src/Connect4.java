@@ -1,27 +1,68 @@
 public class Connect4 {
     // Instance variables
-    // 2D array representing game board
+    // 2D array representing game board (kept in sync with bitBoard by takeTurn, used by the frontend)
     public int[][] board;
+    // Bitboard holding the game state on the standard 7x7 board (null on any other board size)
+    public BitBoard bitBoard;
     // Boolean representing if the game is single player
     public boolean isSinglePlayer;
     // Boolean representing who's turn it is; true = player 1;
     public boolean isTurnP1 = true;
     // Length of streak required to win
-    public final int WIN_LENGTH = 4;
+    public final int WIN_LENGTH;
     // Boolean representing whether the game is over
     public boolean gameOver = false;
+    // Boolean representing whether the game ended in a draw (neither player can complete a streak any more)
+    public boolean isDraw = false;
     // Number of rows and columns of available spaces on game board
-    public final int BOARD_SIZE = 7;
+    public final int BOARD_SIZE;
+    // Default board size and win length (the only ones the bitboard engine supports)
+    public static final int DEFAULT_BOARD_SIZE = BitBoard.SIZE;
+    public static final int DEFAULT_WIN_LENGTH = 4;
     // Integer representing the row of the last piece placed
-    static int lastRow;
+    public int lastRow;
     // Integer representing the column of the last piece placed
-    static int lastCol;
+    public int lastCol;
+    // Every move played so far, as cells (row * BOARD_SIZE + col), and how many there are
+    public int[] moves;
+    public int moveCount;
+    // Statistics of the last minimax search, with the counters used while it runs (nodes, leaves, evaluate calls, and
+    // the lowest remaining depth reached)
+    public SearchStats minimaxStats;
+    private long minimaxNodes;
+    private long minimaxLeaves;
+    private long minimaxEvaluations;
+    private int minimaxLowestDepth;
     // Declare the 2D array for tiered scores, with index [i][j] containing score for [streakLength][openEnds]
-    private int[][] tieredScores = new int[4][3];
+    private int[][] tieredScores;
+    // Scores of gapped streaks (two streaks separated by one empty cell, like X_XX), by total number of pieces
+    private int[] gappedScores;
+    // Line score tables built from the scores above, or null until needed (and again after a score changes)
+    private volatile LineTable lineTable;
+    // Board used to evaluate 2D array boards other than 7x7 (null until needed, and again after a score changes),
+    // updated in place from one call to the next, with its pieces in the order they were placed (GridBoard moves
+    // are undone in reverse order)
+    private GridBoard evaluationBoard;
+    private int[] evaluationMoves;
+    private int evaluationMoveCount;
 
     public Connect4(boolean singlePlayer) {
+        this(singlePlayer, DEFAULT_BOARD_SIZE, DEFAULT_WIN_LENGTH);
+    }
+
+    // Creates a game on a boardSize x boardSize board, won by a streak of winLength pieces
+    // Only the standard 7x7 board has a bitboard (used by minimax and Engine); other sizes are played with GridEngine
+    public Connect4(boolean singlePlayer, int boardSize, int winLength) {
+        BOARD_SIZE = boardSize;
+        WIN_LENGTH = winLength;
         board = new int[BOARD_SIZE][BOARD_SIZE];
+        moves = new int[BOARD_SIZE * BOARD_SIZE];
+        if (BOARD_SIZE == BitBoard.SIZE) {
+            bitBoard = new BitBoard();
+        }
         isSinglePlayer = singlePlayer;
+        tieredScores = new int[WIN_LENGTH][3];
+        gappedScores = new int[WIN_LENGTH];
         initializeScores();
     }
 
@@ -37,14 +78,20 @@ public class Connect4 {
             return false;
         }
         // Otherwise update the spot on the board with a new integer representing the player who put down the piece
+        int player;
         if (isTurnP1) {
-            board[row][col] = 1;
+            player = 1;
         } else {
-            board[row][col] = 2;
+            player = 2;
+        }
+        board[row][col] = player;
+        if (bitBoard != null) {
+            bitBoard.place(BitBoard.cell(row, col), player);
         }
         // Update the last row and col variables
         lastRow = row;
         lastCol = col;
+        moves[moveCount++] = row * BOARD_SIZE + col;
 
         // Check to see if the game was won
         if (gameWinner(isTurnP1)) {
@@ -54,9 +101,24 @@ public class Connect4 {
 
         // Switch turn only if no win
         isTurnP1 = !isTurnP1;
+
+        // Check to see if the game can't be won by either player any more, and end it as a draw right away
+        if (isDead()) {
+            gameOver = true;
+            isDraw = true;
+        }
         return true;
     }
 
+    // Return true if neither player can complete a streak of WIN_LENGTH any more (always true on a full board)
+    // Only tracked on the standard board; other board sizes are only a draw once full
+    public boolean isDead() {
+        if (bitBoard != null) {
+            return bitBoard.isDead(WIN_LENGTH);
+        }
+        return moveCount == BOARD_SIZE * BOARD_SIZE;
+    }
+
     // Return true if the player who just moved has won the game, or false if not
     public boolean gameWinner(boolean isTurnP1) {
         // Get the integer to check for a streak of (1 = player 1, 2 = player 2)
@@ -67,33 +129,29 @@ public class Connect4 {
             validNum = 2;
         }
 
-        // Check to see if the previous move resulted in a winning streak
-        // Start by looking diagonally down and left from current spot, then proceed clockwise
-        for (int i = -1; i <= 1; i++) {
-            for (int j = -1; j <= 1; j++) {
-                // Skip if direction is (0,0) because that’s not a direction
-                if (i == 0 && j == 0) {
-                    continue;
-                }
-                // Skip redundant direction checks
-                if (i > 0 || (i == 0 && j > 0)) {
-                    continue;
-                }
-
-                // Count streaks in both forward and backward directions from the last move
-                int forward = countStreak(board, lastRow + i, lastCol + j, i, j, validNum);
-                int backward = countStreak(board, lastRow - i, lastCol - j, -i, -j, validNum);
+        // On the standard board, check the whole board for a winning streak of this player using bitboard shifts
+        // Only the player who just moved can have a new streak, and the game stops at the first one
+        if (bitBoard != null) {
+            return bitBoard.hasWin(validNum, WIN_LENGTH);
+        }
 
-                // Add 1 to forward and backward streaks to account for last piece placed
-                if (forward + backward + 1 >= WIN_LENGTH) {
-                    return true;
-                }
+        // Otherwise check to see if the previous move resulted in a winning streak
+        // Look in the 4 line directions: horizontal, vertical, and the two diagonals
+        for (int[] direction : GridBoard.DIRECTIONS) {
+            int i = direction[0];
+            int j = direction[1];
+            // Count streaks in both forward and backward directions from the last move
+            int forward = countStreak(board, lastRow + i, lastCol + j, i, j, validNum);
+            int backward = countStreak(board, lastRow - i, lastCol - j, -i, -j, validNum);
+
+            // Add 1 to forward and backward streaks to account for last piece placed
+            if (forward + backward + 1 >= WIN_LENGTH) {
+                return true;
             }
         }
         return false;
     }
 
-    // Helper method for gameWinner
     // Return the number of consecutive validNum pieces in the given direction from (row, col)
     // Takes in the starting row and col, as well as direction of traversal
     // Continues until streak of same number has been broken, or an index is out of bounds
@@ -111,71 +169,101 @@ public class Connect4 {
     // Engine method
     // Return coordinates of the best available move for given game scenario, for the given player
     // Recursively return the move with the highest guaranteed score up to the given depth
+    // Only works on the standard 7x7 board (use GridEngine for other board sizes)
     public Move minimax(int[][] board, int depth, boolean isMaxing, int OGRow, int OGCol) {
+        if (BOARD_SIZE != BitBoard.SIZE || board.length != BitBoard.SIZE) {
+            throw new IllegalArgumentException("minimax only searches the " + BitBoard.SIZE + "x" + BitBoard.SIZE
+                    + " board, use GridEngine for other sizes");
+        }
+        // Search on a bitboard copy of the given board
+        return minimax(BitBoard.fromArray(board), depth, isMaxing, OGRow, OGCol);
+    }
+
+    // Bitboard version of minimax
+    // The bitboard is modified during the search but restored to its original state before returning
+    public Move minimax(BitBoard board, int depth, boolean isMaxing, int OGRow, int OGCol) {
+        long start = System.nanoTime();
+        minimaxNodes = 0;
+        minimaxLeaves = 0;
+        minimaxEvaluations = 0;
+        minimaxLowestDepth = depth;
+        int firstCell = OGRow == -1 ? -1 : BitBoard.cell(OGRow, OGCol);
+        int bestMove = minimax(board, depth, isMaxing, firstCell);
+
+        // Publish the statistics of this search
+        SearchStats stats = new SearchStats("minimax");
+        stats.nodes = minimaxNodes;
+        stats.leaves = minimaxLeaves;
+        stats.evaluations = minimaxEvaluations;
+        stats.depth = depth;
+        stats.maxPly = depth - minimaxLowestDepth;
+        stats.nanos = System.nanoTime() - start;
+        minimaxStats = stats;
+        EngineMetrics.record(stats);
+
+        int cell = Move.cellOf(bestMove);
+        if (cell == -1) {
+            return new Move(-1, -1, Move.scoreOf(bestMove));
+        }
+        return new Move(BitBoard.rowOf(cell), BitBoard.colOf(cell), Move.scoreOf(bestMove));
+    }
+
+    // Allocation-free version of minimax, with moves packed into ints by Move.pack
+    // firstCell is the bit index of the first move of the sequence being searched, or -1 at the top of the tree
+    private int minimax(BitBoard board, int depth, boolean isMaxing, int firstCell) {
+        minimaxNodes++;
+        if (depth < minimaxLowestDepth) {
+            minimaxLowestDepth = depth;
+        }
         // Base Case
         // Find out if the game has been won or lost
         int gameState = evaluate(board);
-        // If this version of the game is over, or depth limit reached, return the score associated with this outcome
-        // along with the coordinates of the first move
-        if (gameState == 1000 || gameState == -1000 || depth == 0) {
-            return new Move(OGRow, OGCol, gameState);
+        minimaxEvaluations++;
+        // If this version of the game is won or lost, return the score associated with this outcome along with the
+        // coordinates of the first move
+        if (gameState == 1000 || gameState == -1000) {
+            minimaxLeaves++;
+            return Move.pack(firstCell, gameState);
         }
-
-        // Initialize best move depending on whether maximizing or minimizing
-        Move bestMove;
-        if (isMaxing) {
-            bestMove = new Move(-1, -1, Integer.MIN_VALUE);
-        } else {
-            bestMove = new Move(-1, -1, Integer.MAX_VALUE);
+        // If neither player can win any more (the board is full, or every line is blocked), it's an exact draw
+        if (board.isDead(WIN_LENGTH)) {
+            minimaxLeaves++;
+            return Move.pack(firstCell, 0);
+        }
+        // If the depth limit is reached, return the heuristic score
+        if (depth == 0) {
+            minimaxLeaves++;
+            return Move.pack(firstCell, gameState);
         }
 
-        // Loop through all possible valid moves
-        for (int i = 0; i < BOARD_SIZE; i++) {
-            for (int j = 0; j < BOARD_SIZE; j++) {
-                // Only consider empty spots on the board (0 means empty)
-                if (board[i][j] == 0) {
-                    // Simulate making this move
-                    // Maxing player uses 2, minimizing player uses 1
-                    if (isMaxing) {
-                        board[i][j] = 2;
-                    } else {
-                        board[i][j] = 1;
-                    }
-
-                    // If the first row and col haven't been initialized yet, make the original coordinates this index
-                    // Set the row and column for the first move in the sequence
-                    int moveRow;
-                    int moveCol;
-                    // Set moveRow and moveCol to the current index if this is the first move being taken in the tree
-                    if (OGRow == -1) {
-                        moveRow = i;
-                        moveCol = j;
-                    }
-                    // Otherwise set them to the coordinates of the original move
-                    else {
-                        moveRow = OGRow;
-                        moveCol = OGCol;
-                    }
-
-                    // Recurse, switch to the other player's turn
-                    Move currentMove = minimax(board, depth - 1, !isMaxing, moveRow, moveCol);
-
-                    // Pick the first move if bestMove hasn't been changed yet
-                    if (currentMove == null) {
-                        continue;
-                    }
-                    // Choose the best move based on current player
-                    if (isMaxing && currentMove.score > bestMove.score) {
-                        // Maximizing player's best move
-                        bestMove = currentMove;
-                    } else if (!isMaxing && currentMove.score < bestMove.score) {
-                        // Minimizing player's best move
-                        bestMove = currentMove;
-                    }
-
-                    // Reset the index on the board to its original state for the next iteration
-                    board[i][j] = 0;
-                }
+        // Initialize best move (no cell yet) with the worst possible score for the current player
+        int bestMove = Move.NONE;
+        boolean found = false;
+        // Maxing player uses 2, minimizing player uses 1
+        int player = isMaxing ? 2 : 1;
+
+        // Loop through all empty spots on the board, lowest bit (top left) first
+        long empty = board.empty();
+        while (empty != 0) {
+            int cell = Long.numberOfTrailingZeros(empty);
+            empty &= empty - 1;
+
+            // Simulate making this move
+            board.place(cell, player);
+
+            // Recurse, switch to the other player's turn
+            // The current index becomes the first move if this is the first move being taken in the tree
+            int currentMove = minimax(board, depth - 1, !isMaxing, firstCell == -1 ? cell : firstCell);
+
+            // Reset the index on the board to its original state for the next iteration
+            board.remove(cell, player);
+
+            // Choose the best move based on current player
+            int score = Move.scoreOf(currentMove);
+            int bestScore = Move.scoreOf(bestMove);
+            if (!found || (isMaxing && score > bestScore) || (!isMaxing && score < bestScore)) {
+                bestMove = currentMove;
+                found = true;
             }
         }
 
@@ -189,96 +277,180 @@ public class Connect4 {
     // +1000 if AI (player 2) wins, -1000 if human (player 1) wins,
     // otherwise a heuristic score based on streaks and their openness
     public int evaluate(int[][] board) {
-        int subScore = 0; // Accumulator for the heuristic score
-
-        // Loop through every cell on the board
-        for (int i = 0; i < BOARD_SIZE; i++) {
-            for (int j = 0; j < BOARD_SIZE; j++) {
-                int index = board[i][j]; // Value at current cell: 0 = empty, 1 = P1, 2 = P2
-                if (index == 0) continue; // Skip empty cells
-
-                // Check all 4 streak directions: horizontal, vertical, and two diagonals
-                int[][] directions = {{0, 1}, {1, 0}, {1, 1}, {-1, 1}};
-                for (int[] dir : directions) {
-                    int dx = dir[0];
-                    int dy = dir[1];
-
-                    // Count how many consecutive cells in this direction belong to the current player
-                    int streakLength = countStreak(board, i, j, dx, dy, index);
-
-                    // If the streak is long enough to win, return immediately
-                    if (streakLength >= WIN_LENGTH) {
-                        return index == 1 ? -1000 : 1000;
-                    }
-
-                    // Only evaluate the streak if this cell is the start of it (to avoid duplicates)
-                    if (isStartOfStreak(board, i, j, dx, dy, index)) {
-                        // Count how many "open ends" (adjacent empty cells at both sides of the streak)
-                        int openEnds = getOpenEnds(board, i, j, dx, dy, streakLength, index);
-
-                        // Heuristic score is streak length * number of open ends (0–2)
-                        int streakScore = tieredScores[streakLength][openEnds];
-
-                        // Add or subtract based on whether it's player 1 (human) or player 2 (AI)
-                        if (index == 1) {
-                            subScore -= streakScore;
-                        } else {
-                            subScore += streakScore;
-                        }
-                    }
+        // Boards other than the standard 7x7 one don't fit in a bitboard
+        if (BOARD_SIZE != BitBoard.SIZE) {
+            return evaluateGrid(board);
+        }
+        return evaluate(BitBoard.fromArray(board));
+    }
+
+    // evaluate for boards other than 7x7, on a GridBoard kept between calls
+    // Consecutive calls (like the leaves of a search) usually differ by the last few moves, so only the pieces back to
+    // the oldest one that changed are taken off, and the new ones placed, instead of building a whole board
+    private synchronized int evaluateGrid(int[][] board) {
+        GridBoard gridBoard = evaluationBoard;
+        if (gridBoard == null) {
+            gridBoard = new GridBoard(this);
+            evaluationBoard = gridBoard;
+            evaluationMoves = new int[BOARD_SIZE * BOARD_SIZE];
+            evaluationMoveCount = 0;
+        }
+        int keep = evaluationMoveCount;
+        for (int i = 0; i < evaluationMoveCount; i++) {
+            int index = evaluationMoves[i];
+            if (board[gridBoard.rowOf(index)][gridBoard.colOf(index)] != gridBoard.cells[index]) {
+                keep = i;
+                break;
+            }
+        }
+        while (evaluationMoveCount > keep) {
+            int index = evaluationMoves[--evaluationMoveCount];
+            gridBoard.unmake(index, gridBoard.cells[index]);
+        }
+        for (int row = 0; row < BOARD_SIZE; row++) {
+            for (int col = 0; col < BOARD_SIZE; col++) {
+                int index = gridBoard.index(row, col);
+                if (board[row][col] != 0 && gridBoard.cells[index] == 0) {
+                    gridBoard.make(index, board[row][col]);
+                    evaluationMoves[evaluationMoveCount++] = index;
                 }
             }
         }
 
-        // Return the heuristic score (no winner found)
-        return subScore;
+        if (gridBoard.winner() == 1) {
+            return -1000;
+        }
+        if (gridBoard.winner() == 2) {
+            return 1000;
+        }
+        return gridBoard.score();
     }
 
-    // Returns true if the current cell (i, j) is the *start* of a streak in the given direction
-    private boolean isStartOfStreak(int[][] board, int i, int j, int dx, int dy, int player) {
-        int prevX = i - dx;
-        int prevY = j - dy;
-        // It's the start if the previous cell is out of bounds or not the same player's piece
-        return !inBounds(prevX, prevY) || board[prevX][prevY] != player;
+    // Bitboard version of evaluate
+    // Every row, column and diagonal is scored with one lookup in the line tables (see LineTable), which give the
+    // tiered score of each streak on the line, tieredScores[streakLength][openEnds], plus the gapped streak scores
+    public int evaluate(BitBoard board) {
+        return lineTable().evaluate(board);
     }
 
-    // Counts how many "open ends" the streak has (0, 1, or 2)
-    // An open end is an empty space at either end of the streak
-    private int getOpenEnds(int[][] board, int i, int j, int dx, int dy, int length, int player) {
-        int openEnds = 0;
+    // Returns the line tables of the current scores, building them if needed
+    public LineTable lineTable() {
+        LineTable table = lineTable;
+        if (table == null) {
+            synchronized (this) {
+                table = lineTable;
+                if (table == null) {
+                    table = new LineTable(this);
+                    lineTable = table;
+                }
+            }
+        }
+        return table;
+    }
+
+    // Returns the score (player 2 positive) of a line of the given length whose cells taken by each player are given
+    // as bitmasks (bit i = the line's i-th cell), used to build the line tables
+    // Every streak shorter than WIN_LENGTH is scored from its first cell using tieredScores[streakLength][openEnds],
+    // and every empty cell with pieces of the same player on both sides adds gappedScores[piecesOnBothSides]
+    public int lineScore(int player1, int player2, int length) {
+        long empty = ((1L << length) - 1) & ~(player1 | player2);
+        return directionScore(player2, empty, 1) + gappedScore(player2, empty, length)
+                - directionScore(player1, empty, 1) - gappedScore(player1, empty, length);
+    }
 
-        // Check one cell before the start of the streak
-        int beforeX = i - dx;
-        int beforeY = j - dy;
-        if (inBounds(beforeX, beforeY) && board[beforeX][beforeY] == 0) {
-            openEnds++;
+    // Returns the sum of the gapped streak scores of the given pieces along a line of the given length
+    private int gappedScore(long bits, long empty, int length) {
+        int subScore = 0;
+        // Empty cells with a piece on both sides
+        long gaps = empty & (bits << 1) & (bits >>> 1);
+        while (gaps != 0) {
+            int gap = Long.numberOfTrailingZeros(gaps);
+            gaps &= gaps - 1;
+            int pieces = 0;
+            for (int i = gap - 1; i >= 0 && (bits >>> i & 1) != 0; i--) {
+                pieces++;
+            }
+            for (int i = gap + 1; i < length && (bits >>> i & 1) != 0; i++) {
+                pieces++;
+            }
+            subScore += gappedScores[Math.min(pieces, WIN_LENGTH - 1)];
         }
+        return subScore;
+    }
+
+    // Returns the sum of the tiered scores of every streak in the given set of pieces along one direction
+    public int directionScore(long bits, long empty, int shift) {
+        int subScore = 0;
+        // Cells where a streak starts (the previous cell in this direction is not the player's piece)
+        long starts = bits & ~(bits << shift);
+        // Cells whose previous cell in this direction is empty (one open end before the streak)
+        long openBefore = empty << shift;
+
+        for (int length = 1; length < WIN_LENGTH; length++) {
+            // Streaks of exactly this length: starts followed by length pieces and then a non-piece
+            long streaks = starts & BitBoard.streakStarts(bits, shift, length) & ~(bits >>> (shift * length));
+            if (streaks == 0) {
+                continue;
+            }
+            // Cells whose cell just past the end of the streak is empty
+            long openAfter = empty >>> (shift * length);
 
-        // Check one cell after the end of the streak
-        int endX = i + dx * length;
-        int endY = j + dy * length;
-        if (inBounds(endX, endY) && board[endX][endY] == 0) {
-            openEnds++;
+            // Count streaks with 2 and with 1 open ends
+            subScore += Long.bitCount(streaks & openBefore & openAfter) * tieredScores[length][2];
+            subScore += Long.bitCount(streaks & (openBefore ^ openAfter)) * tieredScores[length][1];
         }
+        return subScore;
+    }
+
+    // Returns the tiered score of a streak of the given length with the given number of open ends
+    public int tieredScore(int streakLength, int openEnds) {
+        return tieredScores[streakLength][openEnds];
+    }
 
-        return openEnds;
+    // Sets the tiered score of a streak of the given length with the given number of open ends (an eval weight)
+    // The line tables are built again with the new score, and engines start using them from their next search
+    public synchronized void setTieredScore(int streakLength, int openEnds, int score) {
+        tieredScores[streakLength][openEnds] = score;
+        lineTable = null;
+        evaluationBoard = null;
     }
 
-    // Returns true if the (i, j) cell is inside the board boundaries
-    private boolean inBounds(int i, int j) {
-        return i >= 0 && i < BOARD_SIZE && j >= 0 && j < BOARD_SIZE;
+    // Returns the score of a gapped streak with the given total number of pieces
+    public int gappedScore(int pieces) {
+        return gappedScores[pieces];
+    }
+
+    // Sets the score of a gapped streak with the given total number of pieces (an eval weight, 0 to ignore them)
+    // With WIN_LENGTH - 1 pieces or more, filling the gap wins, and all of those use gappedScores[WIN_LENGTH - 1]
+    public synchronized void setGappedScore(int pieces, int score) {
+        gappedScores[pieces] = score;
+        lineTable = null;
+        evaluationBoard = null;
     }
 
     // Initialize the tieredScores array
     private void initializeScores() {
         // Fill the array for valid streaks and open ends
-        tieredScores[1][1] = 1;   // 1-in-a-row, 1 open end
-        tieredScores[1][2] = 2;   // 1-in-a-row, 2 open ends
-
-        tieredScores[2][1] = 5;   // 2-in-a-row, 1 open end
-        tieredScores[2][2] = 10;  // 2-in-a-row, 2 open ends
-
-        tieredScores[3][1] = 50;  // 3-in-a-row, 1 open end
-        tieredScores[3][2] = 100; // 3-in-a-row, 2 open ends
+        int[][] baseScores = {
+                {0, 0, 0},
+                {0, 1, 2},    // 1-in-a-row, 1 or 2 open ends
+                {0, 5, 10},   // 2-in-a-row, 1 or 2 open ends
+                {0, 50, 100}  // 3-in-a-row, 1 or 2 open ends
+        };
+        for (int length = 1; length < WIN_LENGTH; length++) {
+            if (length < baseScores.length) {
+                tieredScores[length][1] = baseScores[length][1];
+                tieredScores[length][2] = baseScores[length][2];
+            } else {
+                // Longer streaks (when more than 4 in a row are needed to win) are each worth 10 times more
+                tieredScores[length][1] = tieredScores[length - 1][1] * 10;
+                tieredScores[length][2] = tieredScores[length - 1][2] * 10;
+            }
+        }
+        // A gapped streak is worth as much as a streak of as many pieces with one open end (X_XX, like XXX_, wins by
+        // filling one cell)
+        for (int pieces = 2; pieces < WIN_LENGTH; pieces++) {
+            gappedScores[pieces] = tieredScores[pieces][1];
+        }
     }
 }
\ No newline at end of file
@@ -1,9 +1,11 @@
 import javax.swing.*;
 import java.awt.*;
 import java.awt.event.*;
-import javax.sound.sampled.*;
+import java.awt.image.BufferedImage;
 import java.io.File;
 import java.io.IOException;
+import java.util.EnumMap;
+import java.util.Map;
 
 public class Connect4Viewer extends JPanel implements MouseListener, KeyListener {
     enum GameState {
@@ -15,17 +17,34 @@ public class Connect4Viewer extends JPanel implements MouseListener, KeyListener
     private GameState state;
     private boolean isSinglePlayer;
     private Connect4 game;
+    private Engine engine;
     private final int GRID_SIZE = 7;
     private Point[][] gridPoints = new Point[GRID_SIZE][GRID_SIZE];
     private int cellWidth, cellHeight;
     private AudioPlayer audioPlayer;
     private Color hotPink = new Color(255, 95, 150);
-    private static final int DEPTH = 4;
+    private static final long THINK_TIME_MS = 1000;
 
     private boolean isPulsing = false;
     private long pulseStartTime = 0;
     private Timer pulseTimer;
 
+    private boolean engineThinking = false;
+    private int thinkingDepth = 0;
+
+    // Rendering cache: the background of each state scaled once to the panel size (instead of on every repaint), the
+    // grid lines, and the pieces (without the pulsing piece while it pulses), so a repaint is just a few image copies
+    private Map<GameState, BufferedImage> scaledBackgrounds = new EnumMap<>(GameState.class);
+    private BufferedImage gridLayer;
+    private BufferedImage piecesLayer;
+    // Panel size the cached images were made for, and the game, move count and pulsing state of the pieces layer
+    private int cachedWidth, cachedHeight;
+    private Connect4 piecesLayerGame;
+    private int piecesLayerMoves = -1;
+    private boolean piecesLayerPulsing;
+    // Pulsing pieces grow up to this factor, so repaints of the animation cover that much around the cell
+    private static final double MAX_PULSE = 1.2;
+
     public Connect4Viewer(boolean isSinglePlayer) {
         this.isSinglePlayer = isSinglePlayer;
         this.game = new Connect4(isSinglePlayer);
@@ -40,6 +59,8 @@ public class Connect4Viewer extends JPanel implements MouseListener, KeyListener
         requestFocusInWindow();
 
         audioPlayer = new AudioPlayer();
+        // Decode the tracks in the background now, so switching screens doesn't wait for the disk
+        audioPlayer.preload("Resources/startingMusic.wav", "Resources/gameMusic.wav", "Resources/winMusic.wav");
         playStartingMusic();
     }
 
@@ -92,21 +113,108 @@ public class Connect4Viewer extends JPanel implements MouseListener, KeyListener
     @Override
     public void paintComponent(Graphics g) {
         super.paintComponent(g);
+        checkCacheSize();
 
-        switch (state) {
-            case START -> g.drawImage(startingScreen.getImage(), 0, 0, getWidth(), getHeight(), null);
-            case PLAYER1_TURN -> g.drawImage(turnP1.getImage(), 0, 0, getWidth(), getHeight(), null);
-            case PLAYER2_TURN -> g.drawImage(turnP2.getImage(), 0, 0, getWidth(), getHeight(), null);
-            case PLAYER1_WIN -> g.drawImage(winP1.getImage(), 0, 0, getWidth(), getHeight(), null);
-            case PLAYER2_WIN -> g.drawImage(winP2.getImage(), 0, 0, getWidth(), getHeight(), null);
-            case ENGINE_WIN -> g.drawImage(winEngine.getImage(), 0, 0, getWidth(), getHeight(), null);
-            case DRAW -> g.drawImage(winDraw.getImage(), 0, 0, getWidth(), getHeight(), null);
-        }
+        g.drawImage(scaledBackground(state), 0, 0, null);
 
         if (state == GameState.PLAYER1_TURN || state == GameState.PLAYER2_TURN || isPulsing) {
-            drawPieces(g);
+            g.drawImage(piecesLayer(), 0, 0, null);
+            if (isPulsing) {
+                drawPulsingPiece(g);
+            }
+            g.drawImage(gridLayer(), 0, 0, null);
+        }
+
+        if (engineThinking) {
+            drawThinking(g);
+        }
+    }
+
+    // Throws away the cached images if the panel was resized since they were made
+    private void checkCacheSize() {
+        int width = Math.max(1, getWidth());
+        int height = Math.max(1, getHeight());
+        if (width != cachedWidth || height != cachedHeight) {
+            cachedWidth = width;
+            cachedHeight = height;
+            scaledBackgrounds.clear();
+            gridLayer = null;
+            piecesLayer = null;
+        }
+    }
+
+    // Returns the background image of the given state, scaled to the panel size the first time it is needed
+    private BufferedImage scaledBackground(GameState state) {
+        BufferedImage background = scaledBackgrounds.get(state);
+        if (background == null) {
+            ImageIcon icon = switch (state) {
+                case START -> startingScreen;
+                case PLAYER1_TURN -> turnP1;
+                case PLAYER2_TURN -> turnP2;
+                case PLAYER1_WIN -> winP1;
+                case PLAYER2_WIN -> winP2;
+                case ENGINE_WIN -> winEngine;
+                case DRAW -> winDraw;
+            };
+            background = createLayer(Transparency.OPAQUE);
+            Graphics2D g = background.createGraphics();
+            // Scaling happens once, so it can use the slower, smoother interpolation
+            g.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+            g.drawImage(icon.getImage(), 0, 0, cachedWidth, cachedHeight, null);
+            g.dispose();
+            scaledBackgrounds.put(state, background);
+        }
+        return background;
+    }
+
+    // Returns the grid lines, drawn the first time they are needed
+    private BufferedImage gridLayer() {
+        if (gridLayer == null) {
+            gridLayer = createLayer(Transparency.BITMASK);
+            Graphics2D g = gridLayer.createGraphics();
             drawAllGridSquares(g);
+            g.dispose();
+        }
+        return gridLayer;
+    }
+
+    // Returns the pieces of the board, drawn again only when a piece was placed, a new game started or the pulsing
+    // animation started or stopped
+    private BufferedImage piecesLayer() {
+        if (piecesLayer == null || piecesLayerGame != game || piecesLayerMoves != game.moveCount
+                || piecesLayerPulsing != isPulsing) {
+            if (piecesLayer == null) {
+                piecesLayer = createLayer(Transparency.BITMASK);
+            }
+            Graphics2D g = piecesLayer.createGraphics();
+            g.setComposite(AlphaComposite.Clear);
+            g.fillRect(0, 0, cachedWidth, cachedHeight);
+            g.setComposite(AlphaComposite.SrcOver);
+            drawPieces(g);
+            g.dispose();
+            piecesLayerGame = game;
+            piecesLayerMoves = game.moveCount;
+            piecesLayerPulsing = isPulsing;
         }
+        return piecesLayer;
+    }
+
+    // Returns an image of the panel size in the screen's format, so drawing it doesn't need any conversion
+    private BufferedImage createLayer(int transparency) {
+        GraphicsConfiguration config = getGraphicsConfiguration();
+        if (config == null) {
+            return new BufferedImage(cachedWidth, cachedHeight, transparency == Transparency.OPAQUE
+                    ? BufferedImage.TYPE_INT_RGB : BufferedImage.TYPE_INT_ARGB);
+        }
+        return config.createCompatibleImage(cachedWidth, cachedHeight, transparency);
+    }
+
+    private void drawThinking(Graphics g) {
+        String text = thinkingDepth == 0 ? "Engine thinking..." : "Engine thinking... depth " + thinkingDepth;
+        g.setFont(g.getFont().deriveFont(Font.BOLD, 20f));
+        g.setColor(Color.CYAN);
+        Point corner = gridPoints[GRID_SIZE - 1][0];
+        g.drawString(text, corner.x - cellWidth / 2, corner.y + cellHeight / 2 + 30);
     }
 
 
@@ -122,35 +230,47 @@ public class Connect4Viewer extends JPanel implements MouseListener, KeyListener
         }
     }
 
+    // Draws every piece except the pulsing one
     private void drawPieces(Graphics g) {
         int[][] board = game.board;
-        long elapsed = System.currentTimeMillis() - pulseStartTime;
 
         for (int r = 0; r < GRID_SIZE; r++) {
             for (int c = 0; c < GRID_SIZE; c++) {
                 int val = board[r][c];
-                if (val != 0) {
+                boolean isLast = isPulsing && r == game.lastRow && c == game.lastCol;
+                if (val != 0 && !isLast) {
                     Point p = gridPoints[r][c];
-                    boolean isLast = isPulsing && r == game.lastRow && c == game.lastCol;
-                    int drawWidth = cellWidth;
-                    int drawHeight = cellHeight;
-
-                    if (isLast) {
-                        double pulseFactor = 1.0 + 0.2 * Math.sin((elapsed / 100.0) * Math.PI);
-                        drawWidth = (int)(cellWidth * pulseFactor);
-                        drawHeight = (int)(cellHeight * pulseFactor);
-                    }
-
-                    int x = p.x - drawWidth / 2;
-                    int y = p.y - drawHeight / 2;
-
                     g.setColor(val == 1 ? hotPink : Color.CYAN);
-                    g.fillRect(x, y, drawWidth, drawHeight);
+                    g.fillRect(p.x - cellWidth / 2, p.y - cellHeight / 2, cellWidth, cellHeight);
                 }
             }
         }
     }
 
+    // Draws the last piece placed, grown by the current size of the pulse
+    private void drawPulsingPiece(Graphics g) {
+        long elapsed = System.currentTimeMillis() - pulseStartTime;
+        double pulseFactor = 1.0 + (MAX_PULSE - 1) * Math.sin((elapsed / 100.0) * Math.PI);
+        int drawWidth = (int)(cellWidth * pulseFactor);
+        int drawHeight = (int)(cellHeight * pulseFactor);
+
+        Point p = gridPoints[game.lastRow][game.lastCol];
+        g.setColor(game.board[game.lastRow][game.lastCol] == 1 ? hotPink : Color.CYAN);
+        g.fillRect(p.x - drawWidth / 2, p.y - drawHeight / 2, drawWidth, drawHeight);
+    }
+
+    // Repaints only the area the pulsing piece can cover
+    private void repaintPulsingCell() {
+        if (game == null) {
+            repaint();
+            return;
+        }
+        Point p = gridPoints[game.lastRow][game.lastCol];
+        int width = (int)(cellWidth * MAX_PULSE) + 2;
+        int height = (int)(cellHeight * MAX_PULSE) + 2;
+        repaint(p.x - width / 2, p.y - height / 2, width, height);
+    }
+
     @Override
     public void mouseClicked(MouseEvent e) {
         int x = e.getX(), y = e.getY();
@@ -159,6 +279,7 @@ public class Connect4Viewer extends JPanel implements MouseListener, KeyListener
             if (x >= 305 && x <= 570 && y >= 470 && y <= 545) {
                 isSinglePlayer = true;
                 game = new Connect4(isSinglePlayer);
+                startEngine();
                 calculateGridPoints();
                 state = GameState.PLAYER1_TURN;
                 playGameMusic();
@@ -167,6 +288,7 @@ public class Connect4Viewer extends JPanel implements MouseListener, KeyListener
             } else if (x >= 635 && x <= 900 && y >= 470 && y <= 545) {
                 isSinglePlayer = false;
                 game = new Connect4(isSinglePlayer);
+                stopEngine();
                 calculateGridPoints();
                 state = GameState.PLAYER1_TURN;
                 playGameMusic();
@@ -177,6 +299,7 @@ public class Connect4Viewer extends JPanel implements MouseListener, KeyListener
         }
 
         if (game == null || game.gameOver || (state != GameState.PLAYER1_TURN && state != GameState.PLAYER2_TURN)) return;
+        if (engineThinking) return;
 
         for (int r = 0; r < GRID_SIZE; r++) {
             for (int c = 0; c < GRID_SIZE; c++) {
@@ -192,7 +315,9 @@ public class Connect4Viewer extends JPanel implements MouseListener, KeyListener
 
                         if (moveValid) {
                             if (game.gameOver) {
-                                if (isBoardFull() && !hasWinner()) {
+                                // The engine was pondering on a reply that will never come
+                                if (engine != null) engine.stopPondering();
+                                if (game.isDraw) {
                                     state = GameState.DRAW;
                                     playWinMusic();
                                 } else {
@@ -211,8 +336,10 @@ public class Connect4Viewer extends JPanel implements MouseListener, KeyListener
                                                         (currentPlayerIsP1 ? GameState.PLAYER1_WIN : GameState.ENGINE_WIN) :
                                                         (currentPlayerIsP1 ? GameState.PLAYER1_WIN : GameState.PLAYER2_WIN);
                                                 playWinMusic();
+                                                repaint();
+                                            } else {
+                                                repaintPulsingCell();
                                             }
-                                            repaint();
                                         }
                                     });
                                     pulseTimer.start();
@@ -222,43 +349,7 @@ public class Connect4Viewer extends JPanel implements MouseListener, KeyListener
                                 repaint();
 
                                 if (isSinglePlayer && !game.isTurnP1) {
-                                    int[][] boardCopy = deepCopyBoard(game.board);
-                                    Move bestMove = game.minimax(boardCopy, DEPTH, true, -1, -1);
-                                    if (bestMove == null) bestMove = getNextAvailableSpot();
-
-                                    if (bestMove != null) {
-                                        Move finalBestMove = bestMove;
-                                        Timer aiMoveTimer = new Timer(500, evt -> {
-                                            game.takeTurn(finalBestMove.row, finalBestMove.col);
-                                            if (game.gameOver) {
-                                                if (isBoardFull() && !hasWinner()) {
-                                                    state = GameState.DRAW;
-                                                } else {
-                                                    isPulsing = true;
-                                                    pulseStartTime = System.currentTimeMillis();
-                                                    pulseTimer = new Timer(50, new ActionListener() {
-                                                        @Override
-                                                        public void actionPerformed(ActionEvent e2) {
-                                                            long elapsed = System.currentTimeMillis() - pulseStartTime;
-                                                            if (elapsed >= 3000) {
-                                                                isPulsing = false;
-                                                                pulseTimer.stop();
-                                                                state = GameState.ENGINE_WIN;
-                                                                playWinMusic();
-                                                            }
-                                                            repaint();
-                                                        }
-                                                    });
-                                                    pulseTimer.start();
-                                                }
-                                            } else {
-                                                state = GameState.PLAYER1_TURN;
-                                            }
-                                            repaint();
-                                        });
-                                        aiMoveTimer.setRepeats(false);
-                                        aiMoveTimer.start();
-                                    }
+                                    startEngineMove();
                                 }
                             }
                         }
@@ -269,40 +360,106 @@ public class Connect4Viewer extends JPanel implements MouseListener, KeyListener
         }
     }
 
-    private boolean isBoardFull() {
-        for (int r = 0; r < GRID_SIZE; r++) {
-            for (int c = 0; c < GRID_SIZE; c++) {
-                if (game.board[r][c] == 0) return false;
+    private void startEngineMove() {
+        Connect4 searchedGame = game;
+        engineThinking = true;
+        thinkingDepth = 0;
+        repaint();
+
+        engine.searchAsync(game.bitBoard, THINK_TIME_MS, true, (depth, bestMove, nodes) ->
+                SwingUtilities.invokeLater(() -> {
+                    if (game == searchedGame) {
+                        thinkingDepth = depth;
+                        repaint();
+                    }
+                })
+        ).whenComplete((bestMove, error) -> {
+            // A failed search still ends the engine's turn (playEngineMove falls back to the first empty spot)
+            if (error != null) error.printStackTrace();
+            SwingUtilities.invokeLater(() -> playEngineMove(searchedGame, error == null ? bestMove : null));
+        });
+    }
+
+    private void playEngineMove(Connect4 searchedGame, Move bestMove) {
+        // The game was reset while the engine was thinking
+        if (game != searchedGame) return;
+
+        engineThinking = false;
+        if (bestMove == null) bestMove = getNextAvailableSpot();
+
+        game.takeTurn(bestMove.row, bestMove.col);
+        if (game.gameOver) {
+            if (game.isDraw) {
+                state = GameState.DRAW;
+            } else {
+                isPulsing = true;
+                pulseStartTime = System.currentTimeMillis();
+                pulseTimer = new Timer(50, new ActionListener() {
+                    @Override
+                    public void actionPerformed(ActionEvent e2) {
+                        long elapsed = System.currentTimeMillis() - pulseStartTime;
+                        if (elapsed >= 3000) {
+                            isPulsing = false;
+                            pulseTimer.stop();
+                            state = GameState.ENGINE_WIN;
+                            playWinMusic();
+                            repaint();
+                        } else {
+                            repaintPulsingCell();
+                        }
+                    }
+                });
+                pulseTimer.start();
             }
+        } else {
+            state = GameState.PLAYER1_TURN;
+            // Keep searching on the player's time, so the next reply is faster
+            engine.ponder(game.bitBoard, true, THINK_TIME_MS);
         }
-        return true;
+        repaint();
     }
 
-    public Move getNextAvailableSpot() {
-        for (int i = 0; i < game.board.length; i++) {
-            for (int j = 0; j < GRID_SIZE; j++) {
-                if (game.board[i][j] == 0) return new Move(i, j, 0);
+    private void startEngine() {
+        stopEngine();
+        engine = new Engine(game);
+        engine.setThreads(Runtime.getRuntime().availableProcessors());
+        // Use the opening book if there is one (the engine just searches every move otherwise)
+        if (new File(OpeningBook.DEFAULT_PATH).exists()) {
+            try {
+                engine.setOpeningBook(OpeningBook.open(OpeningBook.DEFAULT_PATH));
+            } catch (IOException e) {
+                e.printStackTrace();
             }
         }
-        return new Move(0, 0, 0);
     }
 
-    private int[][] deepCopyBoard(int[][] original) {
-        if (original == null) return null;
-        int[][] copy = new int[original.length][];
-        for (int i = 0; i < original.length; i++) {
-            copy[i] = java.util.Arrays.copyOf(original[i], original[i].length);
+    // Stops the engine of the previous single player game, if any (two player games don't use one)
+    private void stopEngine() {
+        if (engine != null) {
+            engine.shutdown();
+            engine = null;
         }
-        return copy;
     }
 
-    private boolean hasWinner() {
-        return state == GameState.PLAYER1_WIN || state == GameState.PLAYER2_WIN || state == GameState.ENGINE_WIN;
+    public Move getNextAvailableSpot() {
+        for (int i = 0; i < game.board.length; i++) {
+            for (int j = 0; j < GRID_SIZE; j++) {
+                if (game.board[i][j] == 0) return new Move(i, j, 0);
+            }
+        }
+        return new Move(0, 0, 0);
     }
 
     @Override
     public void keyPressed(KeyEvent e) {
         if (e.getKeyCode() == KeyEvent.VK_SPACE) {
+            if (engine != null) {
+                engine.stopPondering();
+                engine.cancel();
+            }
+            if (pulseTimer != null) pulseTimer.stop();
+            isPulsing = false;
+            engineThinking = false;
             game = null;
             state = GameState.START;
             calculateGridPoints();
@@ -319,28 +476,8 @@ public class Connect4Viewer extends JPanel implements MouseListener, KeyListener
     public void keyTyped(KeyEvent e) {}
 
     public static void main(String[] args) {
+        // Registered before the first game, so the JMX startup doesn't delay the engine's first move
+        EngineMetrics.register();
         new Connect4Viewer(true);
     }
-
-    static class AudioPlayer {
-        private Clip clip;
-
-        public void playMusic(String filePath) {
-            try {
-                if (clip != null && clip.isRunning()) {
-                    clip.stop();
-                    clip.close();
-                }
-
-                File audioFile = new File(filePath);
-                AudioInputStream audioStream = AudioSystem.getAudioInputStream(audioFile);
-                clip = AudioSystem.getClip();
-                clip.open(audioStream);
-                clip.start();
-                clip.loop(Clip.LOOP_CONTINUOUSLY);
-            } catch (UnsupportedAudioFileException | IOException | LineUnavailableException e) {
-                e.printStackTrace();
-            }
-        }
-    }
 }
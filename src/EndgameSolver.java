@@ -0,0 +1,218 @@
+public class EndgameSolver {
+    // Exact solver for positions with few empty cells left
+    // Instead of scoring the leaves with the evaluate heuristic, it searches every line to the end of the game and
+    // proves whether the player to move wins, draws or loses, and the best move to get that result
+    // Negamax alpha-beta with win/loss/draw scores, where a win is worth more the sooner it comes (score = number of
+    // empty cells left after the winning move + 1), so the solver wins as fast as possible and loses as slowly as
+    // possible
+    // Most of the tree is cut by forced moves: a player who can win immediately does, a player facing two immediate
+    // wins of the opponent has lost, and a player facing one must block it; results are kept in a transposition table
+
+    // Default size of the transposition table in megabytes
+    public static final int DEFAULT_HASH_MB = 4;
+
+    // Instance variables
+    // Streak length needed to win
+    private int winLength;
+    // Results of solved positions (scores from the point of view of the player to move)
+    private TranspositionTable table;
+    // Board being solved
+    private BitBoard board;
+    // Number of nodes visited by the last solve
+    public long nodes;
+    // Moves and move ordering scores, one buffer per number of empty cells (which is different at every ply)
+    private int[][] moveBuffers = new int[65][64];
+    private int[][] orderBuffers = new int[65][64];
+    // Set from another thread to make the current solve stop as soon as possible
+    private volatile boolean stopRequested;
+    // Time (from System.currentTimeMillis) at which the current solve must stop, and whether it ran out of time
+    private long deadline;
+    private boolean stopped;
+
+    public EndgameSolver(int winLength) {
+        this(winLength, DEFAULT_HASH_MB);
+    }
+
+    public EndgameSolver(int winLength, int hashMb) {
+        this.winLength = winLength;
+        this.table = new TranspositionTable(hashMb);
+    }
+
+    // Solves the given position within about the given number of milliseconds (returns null right away if cancelled)
+    // Returns the best move with its exact score (+1000 if player 2 wins, -1000 if player 1 wins, 0 for a draw), or
+    // null if the position couldn't be solved in time or has no empty cells
+    // The board is modified during the search but restored to its original state before returning
+    public Move solve(BitBoard board, boolean isMaxing, long timeMs) {
+        this.board = board;
+        deadline = System.currentTimeMillis() + timeMs;
+        stopped = false;
+        nodes = 0;
+
+        int player = isMaxing ? 2 : 1;
+        long empty = board.empty();
+        if (empty == 0) {
+            return null;
+        }
+        int[] moves = moveBuffers[Long.bitCount(empty)];
+        int count = orderMoves(player, moves);
+        int bestCell = moves[0];
+        int bestScore = -Integer.MAX_VALUE;
+        int alpha = -Integer.MAX_VALUE;
+        for (int i = 0; i < count; i++) {
+            int cell = moves[i];
+            int score;
+            board.place(cell, player);
+            if (board.hasWin(player, winLength)) {
+                score = Long.bitCount(board.empty()) + 1;
+            } else {
+                score = -negamax(3 - player, -Integer.MAX_VALUE, -alpha);
+            }
+            board.remove(cell, player);
+            if (stopped) {
+                return null;
+            }
+            if (score > bestScore) {
+                bestScore = score;
+                bestCell = cell;
+                alpha = Math.max(alpha, score);
+            }
+        }
+
+        // Convert the result to the usual scores (player 2 positive)
+        int result = Integer.signum(bestScore) * 1000;
+        if (!isMaxing) {
+            result = -result;
+        }
+        return new Move(BitBoard.rowOf(bestCell), BitBoard.colOf(bestCell), result);
+    }
+
+    // Asks the running solve to stop as soon as possible (it then returns null)
+    // The request stays until clearCancel, so a cancel that comes before solve is called still stops it
+    public void cancel() {
+        stopRequested = true;
+    }
+
+    // Forgets an earlier cancel request; call it when the search that may use the solver starts, not when solve does
+    public void clearCancel() {
+        stopRequested = false;
+    }
+
+    // Returns the exact score of the board for the given player to move (positive if they win, negative if they lose,
+    // 0 for a draw), only exact if it lies strictly between alpha and beta
+    private int negamax(int player, int alpha, int beta) {
+        nodes++;
+        if ((nodes & 1023) == 0 && (stopRequested || System.currentTimeMillis() >= deadline)) {
+            stopped = true;
+        }
+        if (stopped) {
+            return 0;
+        }
+
+        long empty = board.empty();
+        int emptyCount = Long.bitCount(empty);
+        // A full board, or one where neither player can complete a streak any more, is a draw
+        if (emptyCount == 0 || board.isDead(winLength)) {
+            return 0;
+        }
+        int opponent = 3 - player;
+        // Win right away if possible
+        if (BitBoard.winningCells(board.pieces[player], empty, winLength) != 0) {
+            return emptyCount;
+        }
+        // Two immediate wins of the opponent can't both be blocked
+        long threats = BitBoard.winningCells(board.pieces[opponent], empty, winLength);
+        if (Long.bitCount(threats) > 1) {
+            return -(emptyCount - 1);
+        }
+        // The best this player can still do is win on their next move (or draw if the board fills up before that)
+        int best = Math.max(0, emptyCount - 2);
+        if (beta > best) {
+            beta = best;
+            if (alpha >= beta) {
+                return beta;
+            }
+        }
+
+        int symmetry = board.canonicalSymmetry();
+        long key = Engine.tableKey(board, symmetry, player == 2);
+        long entry = table.probe(key);
+        if (entry != TranspositionTable.NONE) {
+            int stored = TranspositionTable.score(entry);
+            int bound = TranspositionTable.bound(entry);
+            if (bound == TranspositionTable.EXACT
+                    || (bound == TranspositionTable.LOWER && stored >= beta)
+                    || (bound == TranspositionTable.UPPER && stored <= alpha)) {
+                return stored;
+            }
+        }
+
+        // A single immediate win of the opponent must be blocked, otherwise every empty cell is a move
+        int[] moves = moveBuffers[emptyCount];
+        int count;
+        if (threats != 0) {
+            moves[0] = Long.numberOfTrailingZeros(threats);
+            count = 1;
+        } else {
+            count = orderMoves(player, moves);
+        }
+
+        int originalAlpha = alpha;
+        int bestScore = -Integer.MAX_VALUE;
+        int bestCell = -1;
+        for (int i = 0; i < count; i++) {
+            int cell = moves[i];
+            board.place(cell, player);
+            int score = -negamax(opponent, -beta, -alpha);
+            board.remove(cell, player);
+            if (stopped) {
+                return 0;
+            }
+            if (score > bestScore) {
+                bestScore = score;
+                bestCell = cell;
+                alpha = Math.max(alpha, score);
+            }
+            if (alpha >= beta) {
+                break;
+            }
+        }
+
+        int bound;
+        if (bestScore <= originalAlpha) {
+            bound = TranspositionTable.UPPER;
+        } else if (bestScore >= beta) {
+            bound = TranspositionTable.LOWER;
+        } else {
+            bound = TranspositionTable.EXACT;
+        }
+        table.store(key, emptyCount, bestScore, bound, Engine.toCanonical(bestCell, symmetry));
+        return bestScore;
+    }
+
+    // Fills moves with every empty cell and returns the count, ordered by the number of immediate wins the move
+    // creates for the player (ties in bit index order), so moves that make threats are tried first
+    private int orderMoves(int player, int[] moves) {
+        long empty = board.empty();
+        int[] order = orderBuffers[Long.bitCount(empty)];
+        int count = 0;
+        long remaining = empty;
+        while (remaining != 0) {
+            int cell = Long.numberOfTrailingZeros(remaining);
+            remaining &= remaining - 1;
+            long bit = 1L << cell;
+            int score = Long.bitCount(BitBoard.winningCells(board.pieces[player] | bit, empty ^ bit, winLength));
+
+            // Insertion sort by descending score
+            int j = count;
+            while (j > 0 && order[j - 1] < score) {
+                moves[j] = moves[j - 1];
+                order[j] = order[j - 1];
+                j--;
+            }
+            moves[j] = cell;
+            order[j] = score;
+            count++;
+        }
+        return count;
+    }
+}
@@ -0,0 +1,918 @@
+import java.util.Arrays;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+
+public class Engine {
+    // Alpha-beta search engine for the AI player
+    // Searches the same tree as Connect4.minimax (same evaluation, same depth, player 2 maximizing) and returns the
+    // same best move, but skips branches that can't change the result and tries the most promising moves first so
+    // that those skips happen as early as possible
+    // Results are kept in a transposition table between searches, so positions reached by a different move order
+    // (or already searched on a previous turn) aren't searched again; timed searches also reuse results of deeper
+    // searches, but fixed-depth searches only reuse results of exactly the depth they need, since a deeper result
+    // would change what minimax returns
+    // Timed searches can run on several threads (Lazy SMP): helper engines with their own board copy, killers and
+    // history search the same position at the same time, sharing only the lock-free transposition table, so each
+    // thread finds many positions already searched by the others
+    // While the opponent thinks, the engine can ponder: search the position after the opponent's most likely reply,
+    // so that if the guess is right the reply is ready (or nearly) when the opponent moves, and if it is wrong the
+    // transposition table is still full of useful results
+
+    // Maximum search depth supported by the per-ply buffers
+    public static final int MAX_DEPTH = 64;
+    // Default size of the transposition table in megabytes
+    public static final int DEFAULT_HASH_MB = 16;
+    // Default number of empty cells at which timed searches switch to the exact endgame solver
+    public static final int DEFAULT_ENDGAME_EMPTY_CELLS = 20;
+    // Timed searches give the endgame solver this fraction (1/8) of their time, so an unfinished solve leaves most of
+    // it to the heuristic search
+    public static final int SOLVER_TIME_SHARE = 8;
+    // Longest time a ponder search runs if the opponent takes even longer to move
+    public static final long MAX_PONDER_MS = 60_000;
+    // Move ordering scores for each category of move
+    private static final int FIRST_ORDER = 1 << 30;
+    private static final int WIN_ORDER = 1 << 29;
+    private static final int BLOCK_ORDER = 1 << 28;
+    private static final int NEIGHBOR_ORDER = 1 << 27;
+    private static final int KILLER_ORDER = 1 << 26;
+    // Time budget of searches limited only by depth, short enough that adding it to the clock can't overflow
+    private static final long NO_TIME_LIMIT = Long.MAX_VALUE / 4;
+    // Zobrist key XOR-ed into the board hash when the maximizing player (player 2) is to move
+    private static final long MAXING_KEY = 0x9E3779B97F4A7C15L;
+
+    // Instance variables
+    // Game whose evaluation and win length are used
+    private Connect4 game;
+    // Score of the searched board, kept up to date as moves are made and unmade
+    private IncrementalEvaluator evaluator;
+    // Number of nodes visited by the last search (by all threads)
+    public long nodes;
+    // Transposition table shared by all searches and threads of this engine, or null if disabled
+    public TranspositionTable table;
+    // Transposition table statistics of the last search
+    public long tableProbes;
+    public long tableHits;
+    public long tableCutoffs;
+    public long tableStores;
+    // Leaves (positions scored by the evaluation), beta cutoffs (and how many came from the first move searched), and
+    // deepest ply reached by the last search
+    public long leaves;
+    public long cutoffs;
+    public long firstMoveCutoffs;
+    public int maxPly;
+    // Statistics of the last search, also published to EngineMetrics
+    public SearchStats lastStats;
+    // Number of threads used by timed searches, with the helper engines and the pool running them
+    private int threads = 1;
+    private Engine[] helpers = new Engine[0];
+    private ExecutorService pool;
+    // Opening book consulted before timed searches, or null if none
+    private OpeningBook book;
+    // Timed searches with at most this many empty cells are first handed to the exact endgame solver (0 disables it)
+    public int endgameEmptyCells = DEFAULT_ENDGAME_EMPTY_CELLS;
+    // Exact solver for positions near the end of the game, and forced win finder, created when first needed
+    private volatile EndgameSolver solver;
+    private volatile ThreatSearch threatSearch;
+    // Set from another thread to make the current search stop as soon as possible
+    private volatile boolean stopRequested;
+    // Thread running asynchronous searches, and the listener of the current search (null if none)
+    private ExecutorService searchThread;
+    private volatile SearchListener listener;
+    // Number of asynchronous searches started so far, and how many of them (the first ones) were cancelled; a search
+    // queued behind a cancelled one clears the cancel only once it starts running, unless it was cancelled too
+    private AtomicLong startedSearches = new AtomicLong();
+    private volatile long cancelledSearches;
+    // Running ponder search (null if not pondering), the position it searches (after the predicted reply), whose turn
+    // it is there, and when it started
+    private CompletableFuture<Move> ponderSearch;
+    // Listener of the search that took over the ponder search (null until the opponent plays the predicted reply);
+    // the ponder search reports its depths to whatever listener is here when each depth finishes
+    private volatile SearchListener ponderListener;
+    private BitBoard ponderBoard = new BitBoard();
+    private boolean ponderIsMaxing;
+    private long ponderStart;
+    // Predicted reply of the current ponder search (bit index, -1 if not pondering), and how many predictions were
+    // right and wrong so far
+    public int ponderMove = -1;
+    public long ponderHits;
+    public long ponderMisses;
+    // Moves of each ply, with the ordering score of each move
+    private int[][] moveBuffers = new int[MAX_DEPTH][64];
+    private int[][] orderBuffers = new int[MAX_DEPTH][64];
+    // Two killer moves per ply (quiet moves that recently caused a cutoff at that ply), -1 if none
+    private int[][] killers = new int[MAX_DEPTH][2];
+    // History score of each [player][cell], increased every time the move causes a cutoff
+    private int[][] history = new int[3][64];
+    // True during fixed-depth searches (search and searchDepthAsync), which only reuse table results of exactly the
+    // remaining depth
+    private boolean exactDepth;
+    // Depth of the deepest search that finished during the last call to search or searchTimed
+    public int completedDepth;
+    // Time (from System.currentTimeMillis) at which the current search must stop
+    private long deadline;
+    // True once the current search ran out of time
+    private boolean stopped;
+    // Board and packed result of this engine's last search when it is used as a helper thread
+    private BitBoard helperBoard = new BitBoard();
+    private int helperResult;
+    // Triangular principal variation table: pvTable[ply] holds the best line from ply onward, ending at pvLength[ply]
+    private int[][] pvTable = new int[MAX_DEPTH + 1][MAX_DEPTH + 1];
+    private int[] pvLength = new int[MAX_DEPTH + 1];
+    // Principal variation of the last finished depth, and whether the search is still following it
+    private int[] previousPv = new int[MAX_DEPTH + 1];
+    private int previousPvLength;
+    private boolean followPv;
+
+    public Engine(Connect4 game) {
+        this(game, DEFAULT_HASH_MB);
+    }
+
+    // Creates an engine with a transposition table of the given size in megabytes (0 disables the table)
+    public Engine(Connect4 game, int hashMb) {
+        this.game = game;
+        this.evaluator = new IncrementalEvaluator(game);
+        if (hashMb > 0) {
+            table = new TranspositionTable(hashMb);
+        }
+    }
+
+    // Creates a helper engine searching into the given shared table
+    private Engine(Connect4 game, TranspositionTable table) {
+        this.game = game;
+        this.evaluator = new IncrementalEvaluator(game);
+        this.table = table;
+    }
+
+    // Sets the number of threads used by searchTimed (1 searches on the calling thread only)
+    // Only the helper threads are replaced: searches already started or queued on the engine's own thread are left
+    // alone, and a search that is running keeps the helpers it started with until it finishes
+    public void setThreads(int threads) {
+        threads = Math.max(1, threads);
+        if (threads == this.threads) {
+            return;
+        }
+        if (pool != null) {
+            pool.shutdown();
+            pool = null;
+        }
+        this.threads = threads;
+        helpers = new Engine[threads - 1];
+        for (int i = 0; i < helpers.length; i++) {
+            helpers[i] = new Engine(game, table);
+        }
+        if (helpers.length > 0) {
+            pool = Executors.newFixedThreadPool(helpers.length, runnable -> {
+                Thread thread = new Thread(runnable, "engine-helper");
+                thread.setDaemon(true);
+                return thread;
+            });
+        }
+    }
+
+    // Returns the number of threads used by searchTimed
+    public int getThreads() {
+        return threads;
+    }
+
+    // Sets the opening book whose moves searchTimed and searchAsync play instantly (null to stop using one)
+    // Fixed-depth searches never use the book, so they still return exactly what minimax would
+    public void setOpeningBook(OpeningBook book) {
+        this.book = book;
+    }
+
+    // Stops the helper threads and the asynchronous search thread of this engine, cancelling any running search
+    // A later setThreads or searchAsync call starts new ones
+    public void shutdown() {
+        cancel();
+        ponderSearch = null;
+        ponderMove = -1;
+        if (searchThread != null) {
+            searchThread.shutdownNow();
+            searchThread = null;
+        }
+        if (pool != null) {
+            pool.shutdownNow();
+            pool = null;
+        }
+        helpers = new Engine[0];
+        threads = 1;
+    }
+
+    // Return the best move for the given player on the given board, searching to the given depth
+    // The bitboard is modified during the search but restored to its original state before returning
+    public Move search(BitBoard board, int depth, boolean isMaxing) {
+        long start = System.nanoTime();
+        clearCancel();
+        startSearch(Long.MAX_VALUE);
+        exactDepth = true;
+        depth = Math.min(depth, MAX_DEPTH - 1);
+        int bestMove = searchRoot(board, depth, isMaxing);
+        // A cancelled search returns the best of the root moves it finished, but didn't complete the depth
+        if (!stopped) {
+            completedDepth = depth;
+        }
+        publishStats("engine", start);
+        return Move.unpack(bestMove);
+    }
+
+    // Return the best move for the given player on the given board, using about the given number of milliseconds
+    // Searches to depth 1, 2, 3... and returns the best move of the deepest search that finished in time; each
+    // search tries the previous search's principal variation first, which makes it much cheaper than a cold search
+    public Move searchTimed(BitBoard board, long timeMs, boolean isMaxing) {
+        clearCancel();
+        return runTimedSearch(board, timeMs, timeMs / SOLVER_TIME_SHARE, isMaxing);
+    }
+
+    // Starts a timed search on the engine's own thread and returns right away
+    // The future completes with the best move (null if cancelled before depth 1 finished); the listener, if not null,
+    // is told about every finished depth; the board is copied, so the caller can keep using it
+    // If the engine is pondering on this position, the ponder search is reused: it is stopped once it has run for the
+    // given time in total (right away if it already has), so the move is found as deeply as a normal search would, but
+    // mostly on the opponent's time; any other ponder search is stopped first
+    public CompletableFuture<Move> searchAsync(BitBoard board, long timeMs, boolean isMaxing,
+                                               SearchListener listener) {
+        if (ponderSearch != null) {
+            CompletableFuture<Move> pondered = ponderSearch;
+            ponderSearch = null;
+            ponderMove = -1;
+            if (ponderIsMaxing == isMaxing && ponderBoard.pieces[1] == board.pieces[1]
+                    && ponderBoard.pieces[2] == board.pieces[2]) {
+                ponderHits++;
+                return finishPonder(pondered, board, timeMs, isMaxing, listener);
+            }
+            ponderMisses++;
+            // The new search is queued behind the cancelled ponder search instead of waiting for it here
+            cancel();
+        }
+        return startAsync(board, timeMs, timeMs / SOLVER_TIME_SHARE, isMaxing, listener);
+    }
+
+    // Starts a search to the given depth on the engine's own thread and returns right away (see searchAsync)
+    // Searches to depth 1, 2, 3... up to the given depth, with no time limit and without the book, solver or threat
+    // search, so once finished it returns the same move as search (unless a shallower depth already found a forced
+    // win or loss); if cancelled, it returns the best move of the deepest finished depth (null if depth 1 didn't
+    // finish), and completedDepth is that depth
+    public CompletableFuture<Move> searchDepthAsync(BitBoard board, int depth, boolean isMaxing,
+                                                    SearchListener listener) {
+        stopPondering();
+        int maxDepth = Math.min(depth, MAX_DEPTH - 1);
+        return startAsync(board, listener, searchBoard -> {
+            long start = System.nanoTime();
+            long startTime = System.currentTimeMillis();
+            exactDepth = true;
+            Move bestMove = Move.unpack(parallelSearch(searchBoard, startTime, NO_TIME_LIMIT, isMaxing, maxDepth));
+            publishStats("engine", start);
+            return bestMove;
+        });
+    }
+
+    // Starts searching the position reached after the opponent's most likely reply, on the engine's own thread
+    // The board is the current position with the opponent to move, and isMaxing is the side the engine plays
+    // The reply is the second move of the principal variation of the engine's last search, or else the move stored in
+    // the transposition table; the engine doesn't ponder if neither is known
+    // thinkMs is the time the engine's next search will be given: the ponder search runs for up to MAX_PONDER_MS, but
+    // gives the endgame solver only the share of thinkMs a normal search would
+    public void ponder(BitBoard board, boolean isMaxing, long thinkMs) {
+        stopPondering();
+        int engineCell = previousPvLength > 1 ? previousPv[0] : -1;
+        int reply = -1;
+        if (engineCell != -1 && board.get(engineCell) == (isMaxing ? 2 : 1) && board.get(previousPv[1]) == 0) {
+            reply = previousPv[1];
+        } else {
+            int symmetry = board.canonicalSymmetry();
+            int stored = probeMove(tableKey(board, symmetry, !isMaxing), symmetry);
+            if (stored >= 0 && board.get(stored) == 0) {
+                reply = stored;
+            }
+        }
+        if (reply == -1 || board.hasWin(1, game.WIN_LENGTH) || board.hasWin(2, game.WIN_LENGTH)) {
+            return;
+        }
+
+        ponderBoard.copyFrom(board);
+        ponderBoard.place(reply, isMaxing ? 1 : 2);
+        if (ponderBoard.hasWin(isMaxing ? 1 : 2, game.WIN_LENGTH) || ponderBoard.isDead(game.WIN_LENGTH)) {
+            return;
+        }
+        ponderIsMaxing = isMaxing;
+        ponderMove = reply;
+        ponderStart = System.currentTimeMillis();
+        ponderListener = null;
+        long solverMs = thinkMs / SOLVER_TIME_SHARE;
+        ponderSearch = startAsync(ponderBoard, MAX_PONDER_MS, solverMs, isMaxing, (depth, bestMove, nodes) -> {
+            SearchListener hitListener = ponderListener;
+            if (hitListener != null) {
+                hitListener.onDepthFinished(depth, bestMove, nodes);
+            }
+        });
+    }
+
+    // Stops the running ponder search, if any, without using its result
+    // Returns right away; the search finishes on the engine's thread, before any search started after this call
+    public void stopPondering() {
+        if (ponderSearch != null) {
+            cancel();
+            ponderSearch = null;
+            ponderMove = -1;
+        }
+    }
+
+    // Lets the ponder search of the position the opponent actually reached run until it has used the given time in
+    // total, and then completes with its move; falls back to a normal search of the time left (which always finishes
+    // depth 1) if it didn't finish depth 1
+    private CompletableFuture<Move> finishPonder(CompletableFuture<Move> pondered, BitBoard board, long timeMs,
+                                                 boolean isMaxing, SearchListener listener) {
+        ponderListener = listener;
+        long remaining = ponderStart + timeMs - System.currentTimeMillis();
+        if (remaining <= 0) {
+            cancel();
+        } else {
+            CompletableFuture.delayedExecutor(remaining, TimeUnit.MILLISECONDS).execute(() -> {
+                if (!pondered.isDone()) {
+                    cancel();
+                }
+            });
+        }
+        BitBoard searchBoard = board.copy();
+        return pondered.thenCompose(move -> {
+            if (move != null) {
+                return CompletableFuture.completedFuture(move);
+            }
+            long timeLeft = Math.max(1, ponderStart + timeMs - System.currentTimeMillis());
+            return startAsync(searchBoard, timeLeft, timeLeft / SOLVER_TIME_SHARE, isMaxing, listener);
+        });
+    }
+
+    // Starts a timed search on the engine's own thread (see searchAsync), giving the endgame solver solverMs of it
+    private CompletableFuture<Move> startAsync(BitBoard board, long timeMs, long solverMs, boolean isMaxing,
+                                               SearchListener listener) {
+        return startAsync(board, listener, searchBoard -> runTimedSearch(searchBoard, timeMs, solverMs, isMaxing));
+    }
+
+    // Runs the given search of a copy of the board on the engine's own thread
+    private CompletableFuture<Move> startAsync(BitBoard board, SearchListener listener,
+                                               Function<BitBoard, Move> search) {
+        if (searchThread == null) {
+            searchThread = Executors.newSingleThreadExecutor(runnable -> {
+                Thread thread = new Thread(runnable, "engine-search");
+                thread.setDaemon(true);
+                return thread;
+            });
+        }
+        BitBoard searchBoard = board.copy();
+        long id = startedSearches.incrementAndGet();
+        return CompletableFuture.supplyAsync(() -> {
+            // The search before this one (if any) is finished now, so its cancel can be cleared, but only after that
+            // check whether this search was cancelled as well
+            clearCancel();
+            if (cancelledSearches >= id) {
+                stopSearch();
+            }
+            this.listener = listener;
+            try {
+                return search.apply(searchBoard);
+            } finally {
+                this.listener = null;
+            }
+        }, searchThread);
+    }
+
+    // Asks the running search (and its helpers) to stop as soon as possible; the search still returns the best move
+    // of its deepest finished depth
+    // Asynchronous searches that were started but are still queued behind it are cancelled too
+    public void cancel() {
+        cancelledSearches = startedSearches.get();
+        stopSearch();
+    }
+
+    // Sets the stop flag of this engine, its helpers, the solver and the threat search
+    private void stopSearch() {
+        stopRequested = true;
+        for (Engine helper : helpers) {
+            helper.stopRequested = true;
+        }
+        if (solver != null) {
+            solver.cancel();
+        }
+        if (threatSearch != null) {
+            threatSearch.cancel();
+        }
+    }
+
+    // Forgets an earlier cancel request, when a new search starts (for searches that run on the caller's thread)
+    private void clearCancel() {
+        stopRequested = false;
+        if (solver != null) {
+            solver.clearCancel();
+        }
+        if (threatSearch != null) {
+            threatSearch.clearCancel();
+        }
+    }
+
+    // Runs searchTimed without clearing an earlier cancel request, giving the endgame solver solverMs of the time
+    private Move runTimedSearch(BitBoard board, long timeMs, long solverMs, boolean isMaxing) {
+        long start = System.nanoTime();
+        exactDepth = false;
+        // Play the book move without searching if the position is in the book
+        if (book != null) {
+            Move bookMove = book.lookup(board, isMaxing);
+            if (bookMove != null) {
+                startSearch(Long.MAX_VALUE);
+                publishStats("book", start);
+                return bookMove;
+            }
+        }
+
+        long startTime = System.currentTimeMillis();
+        // Near the end of the game, try to solve the position exactly with a small share of the time, and fall back to
+        // the heuristic search if it can't be solved in time; the solver is created before checking for a cancel, so a
+        // cancel made meanwhile reaches either this check or the solver
+        boolean endgame = Long.bitCount(board.empty()) <= endgameEmptyCells;
+        if (endgame && solver == null) {
+            solver = new EndgameSolver(game.WIN_LENGTH);
+        }
+        if (endgame && !stopRequested) {
+            Move solved = solver.solve(board, isMaxing, solverMs);
+            if (solved != null) {
+                startSearch(Long.MAX_VALUE);
+                nodes = solver.nodes;
+                completedDepth = Long.bitCount(board.empty());
+                maxPly = completedDepth;
+                publishStats("solver", start);
+                return solved;
+            }
+        }
+
+        // Look for a forced win made only of threats, which the full-width search would need many more plies to see
+        // It shares the search's deadline, and is skipped (or stopped) like the solver once the search is cancelled
+        if (threatSearch == null) {
+            threatSearch = new ThreatSearch(game.WIN_LENGTH);
+        }
+        long remaining = Math.max(0, startTime + timeMs - System.currentTimeMillis());
+        int winningCell = stopRequested ? -1
+                : threatSearch.findWin(board, isMaxing ? 2 : 1, ThreatSearch.DEFAULT_MAX_ATTACKS, remaining);
+        if (winningCell != -1) {
+            startSearch(Long.MAX_VALUE);
+            nodes = threatSearch.nodes;
+            completedDepth = threatSearch.winningLine().length;
+            maxPly = completedDepth;
+            publishStats("threats", start);
+            return new Move(BitBoard.rowOf(winningCell), BitBoard.colOf(winningCell), isMaxing ? 1000 : -1000);
+        }
+
+        Move bestMove = Move.unpack(parallelSearch(board, startTime, timeMs, isMaxing, MAX_DEPTH - 1));
+        publishStats("engine", start);
+        return bestMove;
+    }
+
+    // Iterative deepening on this thread and every helper thread, up to the given depth, returning the packed best
+    // move of the thread that finished the deepest search
+    private int parallelSearch(BitBoard board, long startTime, long timeMs, boolean isMaxing, int maxDepth) {
+        // The helpers this search starts with, even if setThreads replaces them meanwhile (a helper whose pool was
+        // already shut down by then just isn't started)
+        Engine[] helpers = this.helpers;
+        ExecutorService pool = this.pool;
+        if (helpers.length == 0 || pool == null) {
+            return deepen(board, startTime, timeMs, isMaxing, 1, maxDepth);
+        }
+
+        // Start the helpers on their own copies of the board; every other helper starts one depth deeper, so the
+        // threads are spread over two depths instead of all racing through the same one
+        Future<?>[] results = new Future<?>[helpers.length];
+        for (int i = 0; i < helpers.length; i++) {
+            Engine helper = helpers[i];
+            helper.helperBoard.copyFrom(board);
+            int firstDepth = 1 + (i + 1) % 2;
+            helper.stopRequested = stopRequested;
+            helper.exactDepth = exactDepth;
+            try {
+                results[i] = pool.submit(() -> {
+                    helper.helperResult = helper.deepen(helper.helperBoard, startTime, timeMs, isMaxing, firstDepth,
+                            maxDepth);
+                });
+            } catch (RejectedExecutionException e) {
+                results[i] = null;
+            }
+        }
+        int bestMove = deepen(board, startTime, timeMs, isMaxing, 1, maxDepth);
+
+        // Stop the helpers once this thread is done, and play the move of whichever thread finished the deepest search
+        for (Engine helper : helpers) {
+            helper.stopRequested = true;
+        }
+        for (int i = 0; i < helpers.length; i++) {
+            if (results[i] == null) {
+                continue;
+            }
+            try {
+                results[i].get();
+            } catch (InterruptedException | ExecutionException e) {
+                continue;
+            }
+            Engine helper = helpers[i];
+            if (helper.helperResult != Move.NONE && helper.completedDepth > completedDepth) {
+                bestMove = helper.helperResult;
+                completedDepth = helper.completedDepth;
+                previousPvLength = helper.previousPvLength;
+                System.arraycopy(helper.previousPv, 0, previousPv, 0, previousPvLength);
+            }
+            nodes += helper.nodes;
+            tableProbes += helper.tableProbes;
+            tableHits += helper.tableHits;
+            tableCutoffs += helper.tableCutoffs;
+            tableStores += helper.tableStores;
+            leaves += helper.leaves;
+            cutoffs += helper.cutoffs;
+            firstMoveCutoffs += helper.firstMoveCutoffs;
+            maxPly = Math.max(maxPly, helper.maxPly);
+        }
+        return bestMove;
+    }
+
+    // Iterative deepening from the given first depth until the time budget (counted from startTime) runs out or the
+    // given last depth is finished
+    // Returns the best move of the deepest finished depth, packed by Move.pack
+    private int deepen(BitBoard board, long startTime, long timeMs, boolean isMaxing, int firstDepth,
+                       int lastDepth) {
+        startSearch(startTime + timeMs);
+
+        // Searching deeper than the number of empty cells can't find anything new
+        int maxDepth = Math.min(Long.bitCount(board.empty()), lastDepth);
+        int bestMove = Move.NONE;
+        for (int depth = Math.min(firstDepth, maxDepth); depth <= maxDepth; depth++) {
+            int move = searchRoot(board, depth, isMaxing);
+            // Throw away the unfinished search
+            if (stopped) {
+                break;
+            }
+            bestMove = move;
+            completedDepth = depth;
+            savePrincipalVariation();
+            if (listener != null) {
+                listener.onDepthFinished(depth, Move.unpack(bestMove), nodes);
+            }
+
+            // Stop once the result is a forced win or loss, or if the next depth most likely won't finish in time
+            int score = Move.scoreOf(move);
+            long elapsed = System.currentTimeMillis() - startTime;
+            if (score == 1000 || score == -1000 || elapsed * 2 > timeMs) {
+                break;
+            }
+        }
+        return bestMove;
+    }
+
+    // Returns the principal variation (expected sequence of best moves, as bit indexes) of the last completed depth
+    public int[] principalVariation() {
+        return Arrays.copyOf(previousPv, previousPvLength);
+    }
+
+    // Resets the per-search state, stopping the search once the given time (in milliseconds) is reached
+    private void startSearch(long deadline) {
+        this.deadline = deadline;
+        stopped = false;
+        nodes = 0;
+        completedDepth = 0;
+        previousPvLength = 0;
+        tableProbes = 0;
+        tableHits = 0;
+        tableCutoffs = 0;
+        tableStores = 0;
+        leaves = 0;
+        cutoffs = 0;
+        firstMoveCutoffs = 0;
+        maxPly = 0;
+        clearKillers();
+    }
+
+    // Searches all moves of the root to the given depth and returns the best one packed by Move.pack (Move.NONE if
+    // there are no empty cells)
+    private int searchRoot(BitBoard board, int depth, boolean isMaxing) {
+        evaluator.reset(board);
+        int player = isMaxing ? 2 : 1;
+        int symmetry = board.canonicalSymmetry();
+        long key = tableKey(board, symmetry, isMaxing);
+        // Try the previous depth's best move first, or else the best move stored in the table
+        int firstMove = previousPvLength > 0 ? previousPv[0] : probeMove(key, symmetry);
+        int count = orderMoves(board, player, 0, firstMove);
+        int[] moves = moveBuffers[0];
+        followPv = previousPvLength > 1;
+        pvLength[0] = 0;
+
+        int bestCell = -1;
+        int bestScore = isMaxing ? Integer.MIN_VALUE : Integer.MAX_VALUE;
+        for (int i = 0; i < count; i++) {
+            int cell = moves[i];
+            // Search with a window one point wider than the best score so far, so moves that tie the best score get an
+            // exact score too, and the tie can be broken the same way minimax does (first cell in row-major order)
+            int score;
+            evaluator.make(board, cell, player);
+            if (isMaxing) {
+                int alpha = bestScore == Integer.MIN_VALUE ? Integer.MIN_VALUE : bestScore - 1;
+                score = alphaBeta(board, depth - 1, 1, alpha, Integer.MAX_VALUE, false);
+            } else {
+                int beta = bestScore == Integer.MAX_VALUE ? Integer.MAX_VALUE : bestScore + 1;
+                score = alphaBeta(board, depth - 1, 1, Integer.MIN_VALUE, beta, true);
+            }
+            evaluator.unmake(board, cell, player);
+            followPv = false;
+            if (stopped) {
+                break;
+            }
+
+            boolean better = isMaxing ? score > bestScore : score < bestScore;
+            if (better || (score == bestScore && cell < bestCell)) {
+                bestScore = score;
+                bestCell = cell;
+                updatePv(0, cell);
+            }
+        }
+
+        if (bestCell == -1) {
+            return Move.NONE;
+        }
+        if (table != null && !stopped) {
+            table.store(key, depth, bestScore, TranspositionTable.EXACT, toCanonical(bestCell, symmetry));
+        }
+        return Move.pack(bestCell, bestScore);
+    }
+
+    // Return the minimax score of the given board, only exact if it lies strictly between alpha and beta
+    // Otherwise it is a bound: at most alpha if every move fails low, at least beta if a move fails high
+    private int alphaBeta(BitBoard board, int depth, int ply, int alpha, int beta, boolean isMaxing) {
+        nodes++;
+        if (ply > maxPly) {
+            maxPly = ply;
+        }
+        pvLength[ply] = ply;
+        // Check the clock every 1024 nodes (never before depth 1 finished, so there is always a move to play)
+        // Once out of time or asked to stop, unwind without using any more results
+        if ((nodes & 1023) == 0) {
+            if (stopRequested || (completedDepth > 0 && System.currentTimeMillis() >= deadline)) {
+                stopped = true;
+            }
+        }
+        if (stopped) {
+            return 0;
+        }
+        // A position neither player can win any more (no open line left, a full board included) is an exact draw
+        if (evaluator.winner() == 0 && evaluator.isDead()) {
+            leaves++;
+            return 0;
+        }
+        // Return the score right away if the game is won or the depth limit is reached
+        if (evaluator.winner() != 0 || depth == 0) {
+            leaves++;
+            return evaluator.evaluate();
+        }
+
+        // Reuse the stored result of this position if it was searched at least as deep (exactly as deep in a
+        // fixed-depth search) and settles this window
+        int symmetry = board.canonicalSymmetry();
+        long key = tableKey(board, symmetry, isMaxing);
+        int hashMove = -1;
+        if (table != null) {
+            tableProbes++;
+            long entry = table.probe(key);
+            if (entry != TranspositionTable.NONE) {
+                tableHits++;
+                hashMove = fromCanonical(TranspositionTable.move(entry), symmetry);
+                int storedDepth = TranspositionTable.depth(entry);
+                if (storedDepth == depth || (storedDepth > depth && !exactDepth)) {
+                    int stored = TranspositionTable.score(entry);
+                    int bound = TranspositionTable.bound(entry);
+                    if (bound == TranspositionTable.EXACT
+                            || (bound == TranspositionTable.LOWER && stored >= beta)
+                            || (bound == TranspositionTable.UPPER && stored <= alpha)) {
+                        tableCutoffs++;
+                        return stored;
+                    }
+                }
+            }
+        }
+
+        // While still on the previous depth's principal variation, try its move first
+        int firstMove = hashMove;
+        if (followPv && ply < previousPvLength) {
+            firstMove = previousPv[ply];
+        }
+
+        int player = isMaxing ? 2 : 1;
+        int count = orderMoves(board, player, ply, firstMove);
+        int[] moves = moveBuffers[ply];
+
+        int originalAlpha = alpha;
+        int originalBeta = beta;
+        int bestScore = isMaxing ? Integer.MIN_VALUE : Integer.MAX_VALUE;
+        int bestCell = -1;
+        for (int i = 0; i < count; i++) {
+            int cell = moves[i];
+            evaluator.make(board, cell, player);
+            int score = alphaBeta(board, depth - 1, ply + 1, alpha, beta, !isMaxing);
+            evaluator.unmake(board, cell, player);
+            followPv = false;
+            if (stopped) {
+                return 0;
+            }
+
+            if (isMaxing) {
+                if (score > bestScore) {
+                    bestScore = score;
+                    bestCell = cell;
+                    alpha = Math.max(alpha, score);
+                    updatePv(ply, cell);
+                }
+            } else {
+                if (score < bestScore) {
+                    bestScore = score;
+                    bestCell = cell;
+                    beta = Math.min(beta, score);
+                    updatePv(ply, cell);
+                }
+            }
+            // The opponent already has a better option elsewhere, so the rest of the moves can be skipped
+            if (alpha >= beta) {
+                cutoffs++;
+                if (i == 0) {
+                    firstMoveCutoffs++;
+                }
+                recordCutoff(cell, player, depth, ply);
+                break;
+            }
+        }
+
+        if (table != null) {
+            int bound;
+            if (bestScore <= originalAlpha) {
+                bound = TranspositionTable.UPPER;
+            } else if (bestScore >= originalBeta) {
+                bound = TranspositionTable.LOWER;
+            } else {
+                bound = TranspositionTable.EXACT;
+            }
+            table.store(key, depth, bestScore, bound, toCanonical(bestCell, symmetry));
+            tableStores++;
+        }
+        return bestScore;
+    }
+
+    // Returns the key of the given position in the transposition table and opening book (the side to move is part of
+    // the position)
+    // Every rotation and reflection of a position has the same key, so each symmetry class is stored once; moves are
+    // stored in the orientation of the canonical symmetry (see toCanonical and fromCanonical)
+    public static long tableKey(BitBoard board, boolean isMaxing) {
+        return tableKey(board, board.canonicalSymmetry(), isMaxing);
+    }
+
+    // Returns the key of the given position, given its canonical symmetry
+    public static long tableKey(BitBoard board, int symmetry, boolean isMaxing) {
+        long hash = board.symmetryHashes[symmetry];
+        return isMaxing ? hash ^ MAXING_KEY : hash;
+    }
+
+    // Converts a move of the board to the orientation of its canonical symmetry, for storing (-1 stays -1)
+    public static int toCanonical(int cell, int symmetry) {
+        return cell == -1 ? -1 : BitBoard.SYMMETRY_CELLS[symmetry][cell];
+    }
+
+    // Converts a stored move back from the orientation of the canonical symmetry to the board's (-1 stays -1)
+    public static int fromCanonical(int cell, int symmetry) {
+        return cell == -1 ? -1 : BitBoard.INVERSE_SYMMETRY_CELLS[symmetry][cell];
+    }
+
+    // Returns the stored best move of the given position (in the board's orientation), or -1 if there is none
+    private int probeMove(long key, int symmetry) {
+        if (table == null) {
+            return -1;
+        }
+        long entry = table.probe(key);
+        return entry != TranspositionTable.NONE ? fromCanonical(TranspositionTable.move(entry), symmetry) : -1;
+    }
+
+    // Makes the given move followed by the best line found below it the principal variation of the given ply
+    private void updatePv(int ply, int cell) {
+        pvTable[ply][ply] = cell;
+        int childLength = Math.max(pvLength[ply + 1], ply + 1);
+        for (int i = ply + 1; i < childLength; i++) {
+            pvTable[ply][i] = pvTable[ply + 1][i];
+        }
+        pvLength[ply] = childLength;
+    }
+
+    // Keeps the principal variation of the finished depth so the next depth can search it first
+    private void savePrincipalVariation() {
+        previousPvLength = pvLength[0];
+        System.arraycopy(pvTable[0], 0, previousPv, 0, previousPvLength);
+    }
+
+    // Saves the statistics of the search that started at the given System.nanoTime as lastStats, and publishes them
+    private void publishStats(String source, long start) {
+        SearchStats stats = new SearchStats(source);
+        stats.nodes = nodes;
+        stats.leaves = leaves;
+        stats.evaluations = leaves;
+        stats.depth = completedDepth;
+        stats.maxPly = maxPly;
+        stats.nanos = System.nanoTime() - start;
+        if (source.equals("engine")) {
+            stats.cutoffs = cutoffs;
+            stats.firstMoveCutoffs = firstMoveCutoffs;
+            if (table != null) {
+                stats.tableProbes = tableProbes;
+                stats.tableHits = tableHits;
+            }
+        }
+        lastStats = stats;
+        EngineMetrics.record(stats);
+    }
+
+    // Returns a one-line summary of the last search
+    public String stats() {
+        String line = "depth=" + completedDepth + " nodes=" + nodes;
+        if (table != null) {
+            double hitRate = tableProbes == 0 ? 0 : 100.0 * tableHits / tableProbes;
+            line += String.format(" table: entries=%d probes=%d hits=%d (%.1f%%) cutoffs=%d stores=%d",
+                    table.capacity(), tableProbes, tableHits, hitRate, tableCutoffs, tableStores);
+        }
+        if (threads > 1) {
+            line += " threads=" + threads;
+        }
+        return line;
+    }
+
+    // Fills the move buffer of the given ply with every empty cell, best candidates first, and returns the count
+    // Order: the given first move (principal variation or transposition table move), cells that win immediately,
+    // cells that block an immediate win of the opponent, cells next to existing pieces, then everything else; ties
+    // within a category are broken by killer moves and then history scores
+    private int orderMoves(BitBoard board, int player, int ply, int firstMove) {
+        int[] moves = moveBuffers[ply];
+        int[] order = orderBuffers[ply];
+        int opponent = 3 - player;
+        int winLength = game.WIN_LENGTH;
+
+        long empty = board.empty();
+        long wins = BitBoard.winningCells(board.pieces[player], empty, winLength);
+        long blocks = BitBoard.winningCells(board.pieces[opponent], empty, winLength);
+        long neighbors = BitBoard.neighbors(board.pieces[1] | board.pieces[2]);
+
+        int count = 0;
+        while (empty != 0) {
+            int cell = Long.numberOfTrailingZeros(empty);
+            empty &= empty - 1;
+            long bit = 1L << cell;
+
+            int score = history[player][cell];
+            if (cell == firstMove) {
+                score += FIRST_ORDER;
+            }
+            if ((wins & bit) != 0) {
+                score += WIN_ORDER;
+            } else if ((blocks & bit) != 0) {
+                score += BLOCK_ORDER;
+            } else if ((neighbors & bit) != 0) {
+                score += NEIGHBOR_ORDER;
+            }
+            if (cell == killers[ply][0] || cell == killers[ply][1]) {
+                score += KILLER_ORDER;
+            }
+
+            // Insertion sort by descending score (stable, so equal scores stay in row-major order)
+            int j = count;
+            while (j > 0 && order[j - 1] < score) {
+                moves[j] = moves[j - 1];
+                order[j] = order[j - 1];
+                j--;
+            }
+            moves[j] = cell;
+            order[j] = score;
+            count++;
+        }
+        return count;
+    }
+
+    // Remembers a move that caused a cutoff, as a killer move for its ply and in the history table
+    private void recordCutoff(int cell, int player, int depth, int ply) {
+        if (killers[ply][0] != cell) {
+            killers[ply][1] = killers[ply][0];
+            killers[ply][0] = cell;
+        }
+        // Deeper cutoffs save more work, so they weigh more; keep history well below the killer ordering score
+        history[player][cell] = Math.min(history[player][cell] + depth * depth, KILLER_ORDER - 1);
+    }
+
+    // Clears the killer moves left over from the previous search
+    private void clearKillers() {
+        for (int[] plyKillers : killers) {
+            plyKillers[0] = -1;
+            plyKillers[1] = -1;
+        }
+    }
+}
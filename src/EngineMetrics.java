@@ -0,0 +1,136 @@
+import java.lang.management.ManagementFactory;
+import javax.management.JMException;
+import javax.management.ObjectName;
+
+public class EngineMetrics implements EngineMetricsMBean {
+    // Running statistics of every search made by minimax, Engine, EndgameSolver and OpeningBook lookups in this JVM
+    // Registered with the platform MBean server by register(), which the programs call at startup, so dashboards (or
+    // jconsole) can read it without a profiler (unless the system property connect4.registerMBean is false); starting
+    // JMX takes a few hundred ms, so it's never done lazily on a search thread, where it would eat into a move's time
+    // Setting the system property connect4.logSearches=true (or the LogSearches attribute) also writes one
+    // SearchStats.toLogLine() line per search to System.err
+
+    // Name of the MBean
+    public static final String OBJECT_NAME = "Connect4:type=EngineMetrics";
+    // System property turning the MBean registration off (with the value false)
+    public static final String REGISTER_PROPERTY = "connect4.registerMBean";
+    // The single instance, shared by every engine and game
+    public static final EngineMetrics INSTANCE = new EngineMetrics();
+
+    // Instance variables
+    // Totals over every search
+    private long searches;
+    private long totalNodes;
+    private long totalNanos;
+    // Last recorded search
+    private SearchStats last = new SearchStats("none");
+    // Whether every search is logged
+    private volatile boolean logSearches = Boolean.getBoolean("connect4.logSearches");
+    // Whether the MBean registration was done yet
+    private boolean registered;
+
+    private EngineMetrics() {
+    }
+
+    // Registers the MBean with the platform MBean server, once, unless the system property turns it off
+    public static void register() {
+        INSTANCE.registerOnce();
+    }
+
+    private synchronized void registerOnce() {
+        if (registered || !Boolean.parseBoolean(System.getProperty(REGISTER_PROPERTY, "true"))) {
+            return;
+        }
+        registered = true;
+        try {
+            ManagementFactory.getPlatformMBeanServer().registerMBean(this, new ObjectName(OBJECT_NAME));
+        } catch (JMException e) {
+            e.printStackTrace();
+        }
+    }
+
+    // Records the statistics of a finished search (and logs it if enabled)
+    public static void record(SearchStats stats) {
+        INSTANCE.add(stats);
+        if (INSTANCE.logSearches) {
+            System.err.println(stats.toLogLine());
+        }
+    }
+
+    // Adds a search to the totals
+    private synchronized void add(SearchStats stats) {
+        searches++;
+        totalNodes += stats.nodes;
+        totalNanos += stats.nanos;
+        last = stats;
+    }
+
+    // Getters of the MBean attributes
+    public synchronized long getSearches() {
+        return searches;
+    }
+
+    public synchronized long getTotalNodes() {
+        return totalNodes;
+    }
+
+    public synchronized long getTotalMillis() {
+        return totalNanos / 1_000_000;
+    }
+
+    public synchronized double getAverageNodesPerSecond() {
+        return totalNanos == 0 ? 0 : totalNodes * 1e9 / totalNanos;
+    }
+
+    public synchronized String getLastSource() {
+        return last.source;
+    }
+
+    public synchronized long getLastNodes() {
+        return last.nodes;
+    }
+
+    public synchronized long getLastLeaves() {
+        return last.leaves;
+    }
+
+    public synchronized long getLastEvaluations() {
+        return last.evaluations;
+    }
+
+    public synchronized double getLastNodesPerSecond() {
+        return last.nodesPerSecond();
+    }
+
+    public synchronized int getLastDepth() {
+        return last.depth;
+    }
+
+    public synchronized int getLastMaxPly() {
+        return last.maxPly;
+    }
+
+    public synchronized double getLastMillis() {
+        return last.nanos / 1e6;
+    }
+
+    public synchronized double getLastCutoffRatio() {
+        return last.cutoffRatio();
+    }
+
+    public synchronized double getLastFirstMoveCutoffRatio() {
+        return last.firstMoveCutoffRatio();
+    }
+
+    public synchronized double getLastTableHitRate() {
+        return last.tableHitRate();
+    }
+
+    public boolean isLogSearches() {
+        return logSearches;
+    }
+
+    public void setLogSearches(boolean logSearches) {
+        this.logSearches = logSearches;
+    }
+}
@@ -0,0 +1,40 @@
+public interface EngineMetricsMBean {
+    // JMX view of EngineMetrics (attributes of the Connect4:type=EngineMetrics MBean)
+
+    // Totals over every search since startup
+    long getSearches();
+
+    long getTotalNodes();
+
+    long getTotalMillis();
+
+    double getAverageNodesPerSecond();
+
+    // Statistics of the last search
+    String getLastSource();
+
+    long getLastNodes();
+
+    long getLastLeaves();
+
+    long getLastEvaluations();
+
+    double getLastNodesPerSecond();
+
+    int getLastDepth();
+
+    int getLastMaxPly();
+
+    double getLastMillis();
+
+    double getLastCutoffRatio();
+
+    double getLastFirstMoveCutoffRatio();
+
+    double getLastTableHitRate();
+
+    // Whether every search is also written to System.err as a structured log line
+    boolean isLogSearches();
+
+    void setLogSearches(boolean logSearches);
+}
@@ -0,0 +1,109 @@
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+public class GameRecord {
+    // One finished (or abandoned) game on the standard 7x7 board, in the compact binary format of game record files
+    // A record file starts with a file header (magic number, format version, board size), followed by the games one
+    // after the other; each game is a 2-byte header (number of moves, result) followed by one byte per move, the cell
+    // played (row * 7 + col, 0-48), player 1 moving first
+    // A typical game takes about 30 bytes, so millions of games fit in a file small enough to memory-map
+    // Files are appended to by GameRecordWriter and re-analyzed by GameRecordAnalyzer
+
+    // File header: "C4GR", format version, board size, and two reserved bytes
+    public static final int MAGIC = 0x43344752;
+    public static final int VERSION = 1;
+    public static final int FILE_HEADER_BYTES = 8;
+    // Bytes of the header of each game
+    public static final int GAME_HEADER_BYTES = 2;
+    // Results: a draw (full board), a win of player 1 or 2, or a game that ended before either
+    public static final int DRAW = 0;
+    public static final int UNFINISHED = 3;
+
+    // Instance variables
+    // Cells played (row * 7 + col), in order
+    public int[] moves;
+    // DRAW, 1 or 2 (the winner), or UNFINISHED
+    public int result;
+
+    public GameRecord(int[] moves, int result) {
+        this.moves = moves;
+        this.result = result;
+    }
+
+    // Returns the record of the given game on the standard board
+    public static GameRecord of(Connect4 game) {
+        if (game.BOARD_SIZE != BitBoard.SIZE) {
+            throw new IllegalArgumentException("Only games on the " + BitBoard.SIZE + "x" + BitBoard.SIZE
+                    + " board can be recorded");
+        }
+        int result = UNFINISHED;
+        // takeTurn doesn't switch turns after a win, so the winner is the player to move
+        if (game.isDraw) {
+            result = DRAW;
+        } else if (game.gameOver) {
+            result = game.isTurnP1 ? 1 : 2;
+        }
+        int[] moves = new int[game.moveCount];
+        System.arraycopy(game.moves, 0, moves, 0, game.moveCount);
+        return new GameRecord(moves, result);
+    }
+
+    // Returns the number of bytes this game takes in a record file
+    public int bytes() {
+        return GAME_HEADER_BYTES + moves.length;
+    }
+
+    // Writes this game at the buffer's position
+    public void writeTo(ByteBuffer buffer) {
+        buffer.put((byte) moves.length);
+        buffer.put((byte) result);
+        for (int move : moves) {
+            buffer.put((byte) move);
+        }
+    }
+
+    // Reads the game starting at the given offset of a record file buffer (absolute reads, so the buffer can be shared
+    // between threads)
+    public static GameRecord readFrom(ByteBuffer buffer, int offset) {
+        int count = buffer.get(offset) & 0xFF;
+        int result = buffer.get(offset + 1);
+        int[] moves = new int[count];
+        for (int i = 0; i < count; i++) {
+            moves[i] = buffer.get(offset + GAME_HEADER_BYTES + i);
+        }
+        return new GameRecord(moves, result);
+    }
+
+    // Returns the length in bytes of the game starting at the given offset of a record file buffer
+    public static int bytesAt(ByteBuffer buffer, int offset) {
+        return GAME_HEADER_BYTES + (buffer.get(offset) & 0xFF);
+    }
+
+    // Writes the file header at the buffer's position
+    public static void writeFileHeader(ByteBuffer buffer) {
+        buffer.putInt(MAGIC);
+        buffer.put((byte) VERSION);
+        buffer.put((byte) BitBoard.SIZE);
+        buffer.putShort((short) 0);
+    }
+
+    // Throws an IOException unless the buffer starts with a header this version can read
+    public static void checkFileHeader(ByteBuffer buffer) throws IOException {
+        if (buffer.limit() < FILE_HEADER_BYTES || buffer.getInt(0) != MAGIC) {
+            throw new IOException("Not a game record file");
+        }
+        if (buffer.get(4) != VERSION || buffer.get(5) != BitBoard.SIZE) {
+            throw new IOException("Unsupported game record file version " + buffer.get(4) + " (board size "
+                    + buffer.get(5) + ")");
+        }
+    }
+
+    // Returns a new game with every move of this record played
+    public Connect4 replay() {
+        Connect4 game = new Connect4(false);
+        for (int move : moves) {
+            game.takeTurn(move / BitBoard.SIZE, move % BitBoard.SIZE);
+        }
+        return game;
+    }
+}
@@ -0,0 +1,203 @@
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+public class GameRecordAnalyzer {
+    // Bulk re-analysis of a game record file (format described in GameRecord) with the engine
+    // The file is memory-mapped and indexed in one pass, then the games are replayed on all cores at once, each worker
+    // thread with its own Engine; every move is checked with a fixed-depth search for:
+    //   missed wins: the player had a forced win (within the search depth) and played a move that doesn't keep it
+    //   blunders: the player wasn't lost, and played a move that allows a forced loss
+    // Also counts the results of every opening (first few moves, rotations and reflections counted together)
+    // Usage: java GameRecordAnalyzer <record file> [depth] [threads] [opening plies]
+
+    // Number of openings printed
+    private static final int TOP_OPENINGS = 10;
+
+    // Instance variables
+    // Settings
+    private int depth;
+    private int threads;
+    private int openingPlies;
+    // Mapped record file, and the offset of every game in it
+    private MappedByteBuffer buffer;
+    private int[] offsets;
+    // Next game to analyze
+    private AtomicInteger nextGame = new AtomicInteger();
+    // Totals: moves checked, and missed wins and blunders of each player (index 1 and 2)
+    private AtomicLong movesChecked = new AtomicLong();
+    private AtomicLong[] missedWins = {new AtomicLong(), new AtomicLong(), new AtomicLong()};
+    private AtomicLong[] blunders = {new AtomicLong(), new AtomicLong(), new AtomicLong()};
+    // Results of each opening (cells in the canonical orientation, separated by spaces): games, player 1 wins,
+    // player 2 wins, draws
+    private Map<String, long[]> openings = new ConcurrentHashMap<>();
+
+    public GameRecordAnalyzer(int depth, int threads, int openingPlies) {
+        this.depth = Math.max(2, depth);
+        this.threads = threads;
+        this.openingPlies = openingPlies;
+    }
+
+    public static void main(String[] args) throws IOException, InterruptedException {
+        if (args.length < 1) {
+            System.out.println("Usage: java GameRecordAnalyzer <record file> [depth] [threads] [opening plies]");
+            return;
+        }
+        int depth = args.length > 1 ? Integer.parseInt(args[1]) : 4;
+        int threads = args.length > 2 ? Integer.parseInt(args[2]) : Runtime.getRuntime().availableProcessors();
+        int openingPlies = args.length > 3 ? Integer.parseInt(args[3]) : 2;
+        new GameRecordAnalyzer(depth, threads, openingPlies).analyze(args[0]);
+    }
+
+    // Maps and indexes the file, analyzes every game and prints the report
+    public void analyze(String path) throws IOException, InterruptedException {
+        try (FileChannel channel = FileChannel.open(Path.of(path), StandardOpenOption.READ)) {
+            if (channel.size() > Integer.MAX_VALUE) {
+                throw new IOException("Record file too large to map at once: " + channel.size() + " bytes");
+            }
+            buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        }
+        GameRecord.checkFileHeader(buffer);
+        offsets = index(buffer);
+        System.out.printf("%d games in %s, checking every move at depth %d on %d threads%n", offsets.length, path,
+                depth, threads);
+
+        long start = System.nanoTime();
+        ExecutorService pool = Executors.newFixedThreadPool(threads);
+        for (int i = 0; i < threads; i++) {
+            pool.execute(this::analyzeGames);
+        }
+        pool.shutdown();
+        pool.awaitTermination(Long.MAX_VALUE, TimeUnit.DAYS);
+        double seconds = (System.nanoTime() - start) / 1e9;
+
+        printReport(seconds);
+    }
+
+    // Returns the offset of every complete game in the mapped file
+    private static int[] index(MappedByteBuffer buffer) {
+        int[] found = new int[1024];
+        int count = 0;
+        int offset = GameRecord.FILE_HEADER_BYTES;
+        while (offset + GameRecord.GAME_HEADER_BYTES <= buffer.limit()
+                && offset + GameRecord.bytesAt(buffer, offset) <= buffer.limit()) {
+            if (count == found.length) {
+                found = Arrays.copyOf(found, count * 2);
+            }
+            found[count++] = offset;
+            offset += GameRecord.bytesAt(buffer, offset);
+        }
+        return Arrays.copyOf(found, count);
+    }
+
+    // Worker loop: analyzes games until all of them have been started
+    private void analyzeGames() {
+        Engine engine = new Engine(new Connect4(false), 4);
+        int gameNumber;
+        while ((gameNumber = nextGame.getAndIncrement()) < offsets.length) {
+            GameRecord game = GameRecord.readFrom(buffer, offsets[gameNumber]);
+            countOpening(game);
+            checkMoves(engine, game);
+        }
+    }
+
+    // Checks every move of the game for missed wins and blunders
+    private void checkMoves(Engine engine, GameRecord game) {
+        BitBoard board = new BitBoard();
+        int winLength = Connect4.DEFAULT_WIN_LENGTH;
+        for (int i = 0; i < game.moves.length; i++) {
+            int cell = BitBoard.cell(game.moves[i] / BitBoard.SIZE, game.moves[i] % BitBoard.SIZE);
+            int player = i % 2 == 0 ? 1 : 2;
+            boolean isMaxing = player == 2;
+            // Scores from the point of view of the player to move
+            int sign = isMaxing ? 1 : -1;
+            int best = sign * engine.search(board, depth, isMaxing).score;
+
+            board.place(cell, player);
+            int played;
+            if (board.hasWin(player, winLength)) {
+                played = 1000;
+            } else if (board.isDead(winLength)) {
+                played = 0;
+            } else {
+                played = sign * engine.search(board, depth - 1, !isMaxing).score;
+            }
+            movesChecked.incrementAndGet();
+
+            if (best == 1000 && played != 1000) {
+                missedWins[player].incrementAndGet();
+            } else if (played == -1000 && best != -1000) {
+                blunders[player].incrementAndGet();
+            }
+            if (board.hasWin(player, winLength)) {
+                break;
+            }
+        }
+    }
+
+    // Adds the game's result to its opening
+    private void countOpening(GameRecord game) {
+        if (game.moves.length < openingPlies) {
+            return;
+        }
+        BitBoard board = new BitBoard();
+        for (int i = 0; i < openingPlies; i++) {
+            board.place(BitBoard.cell(game.moves[i] / BitBoard.SIZE, game.moves[i] % BitBoard.SIZE), i % 2 + 1);
+        }
+        // Name the opening by its moves in the canonical orientation, so rotations and reflections count as one
+        int symmetry = board.canonicalSymmetry();
+        StringBuilder name = new StringBuilder();
+        for (int i = 0; i < openingPlies; i++) {
+            int cell = Engine.toCanonical(BitBoard.cell(game.moves[i] / BitBoard.SIZE, game.moves[i] % BitBoard.SIZE),
+                    symmetry);
+            if (name.length() > 0) {
+                name.append(' ');
+            }
+            name.append(BitBoard.rowOf(cell) * BitBoard.SIZE + BitBoard.colOf(cell));
+        }
+        openings.compute(name.toString(), (key, counts) -> {
+            if (counts == null) {
+                counts = new long[4];
+            }
+            counts[0]++;
+            if (game.result == 1 || game.result == 2) {
+                counts[game.result]++;
+            } else if (game.result == GameRecord.DRAW) {
+                counts[3]++;
+            }
+            return counts;
+        });
+    }
+
+    // Prints games/sec, the missed wins and blunders of each player, and the most played openings
+    private void printReport(double seconds) {
+        long moves = movesChecked.get();
+        System.out.printf("%d games, %d moves in %.1f s (%.1f games/sec, %.0f moves/sec)%n", offsets.length, moves,
+                seconds, offsets.length / seconds, moves / seconds);
+        for (int player = 1; player <= 2; player++) {
+            System.out.printf("Player %d: %d missed wins, %d blunders%n", player, missedWins[player].get(),
+                    blunders[player].get());
+        }
+
+        List<Map.Entry<String, long[]>> sorted = new ArrayList<>(openings.entrySet());
+        sorted.sort((a, b) -> Long.compare(b.getValue()[0], a.getValue()[0]));
+        System.out.printf("Most played openings (%d plies, cells row * 7 + col):%n", openingPlies);
+        for (Map.Entry<String, long[]> opening : sorted.subList(0, Math.min(TOP_OPENINGS, sorted.size()))) {
+            long[] counts = opening.getValue();
+            System.out.printf("  %-12s games=%d p1=%.1f%% p2=%.1f%% draws=%.1f%%%n", opening.getKey(), counts[0],
+                    100.0 * counts[1] / counts[0], 100.0 * counts[2] / counts[0], 100.0 * counts[3] / counts[0]);
+        }
+    }
+}
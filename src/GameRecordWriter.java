@@ -0,0 +1,84 @@
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.locks.ReentrantLock;
+
+public class GameRecordWriter implements AutoCloseable {
+    // Appends games to a game record file (format described in GameRecord)
+    // Games are collected in a direct buffer and written to the file channel in one call once the buffer is full (or
+    // on flush/close), so logging a game normally costs a few byte copies and no system call
+    // Safe to use from several threads at once (with a lock rather than synchronized, so a virtual thread writing to
+    // the file doesn't pin its carrier thread); a file that already has games is appended to
+
+    // Size of the write buffer
+    public static final int BUFFER_BYTES = 64 * 1024;
+
+    // Instance variables
+    // File being appended to, and the games not written to it yet
+    private FileChannel channel;
+    private ByteBuffer buffer = ByteBuffer.allocateDirect(BUFFER_BYTES);
+    // Held while the buffer or the file is used
+    private ReentrantLock lock = new ReentrantLock();
+    // Number of games appended by this writer
+    public long games;
+
+    public GameRecordWriter(String path) throws IOException {
+        channel = FileChannel.open(Path.of(path), StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.READ);
+        if (channel.size() == 0) {
+            GameRecord.writeFileHeader(buffer);
+        } else {
+            ByteBuffer header = ByteBuffer.allocate(GameRecord.FILE_HEADER_BYTES);
+            channel.read(header, 0);
+            GameRecord.checkFileHeader(header);
+        }
+        channel.position(channel.size());
+    }
+
+    // Adds the game to the file
+    public void append(GameRecord game) throws IOException {
+        lock.lock();
+        try {
+            if (buffer.remaining() < game.bytes()) {
+                writeBuffer();
+            }
+            game.writeTo(buffer);
+            games++;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    // Writes every game appended so far to the file
+    public void flush() throws IOException {
+        lock.lock();
+        try {
+            writeBuffer();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    // Writes the remaining games and closes the file
+    @Override
+    public void close() throws IOException {
+        lock.lock();
+        try {
+            writeBuffer();
+            channel.close();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    // Writes the buffer to the file and empties it
+    private void writeBuffer() throws IOException {
+        buffer.flip();
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+        buffer.clear();
+    }
+}
@@ -0,0 +1,279 @@
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.PrintWriter;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicLong;
+
+public class GameServer {
+    // Headless game server: plays Connect4 games over a line-based protocol on a local TCP socket
+    // Every connection is a session with its own Connect4 game, served by its own virtual thread, so thousands of
+    // sessions can be open at once; AI moves borrow an Engine from a small shared pool (one search per engine at a
+    // time), so the CPU work stays bounded however many sessions are waiting for a move
+    // Searches run on a pool of platform threads (one per engine) while the session's virtual thread waits for the
+    // result, so a long search never holds one of the few carrier threads the socket I/O of every session runs on
+    // Usage: java GameServer [port] [engines] [think ms] [game record file]
+    // With a game record file, every finished game is appended to it (see GameRecord)
+    //
+    // Protocol (one command per line, one or more reply lines per command):
+    //   NEW SINGLE | NEW TWO   -> OK NEW, starts a new game (SINGLE = against the engine, which plays player 2)
+    //   MOVE <row> <col>       -> OK MOVE <row> <col>, then AI <row> <col> in single player games, and always ends
+    //                             with TURN <player to move>, WIN <player> or DRAW (sent as soon as neither player
+    //                             can complete a streak any more)
+    //   BOARD                  -> BOARD <49 digits> row by row (0 = empty, 1 = player 1, 2 = player 2)
+    //   QUIT                   -> BYE
+    //   anything invalid       -> ERROR <reason>
+
+    // Default port, and default time the engine thinks per move
+    public static final int DEFAULT_PORT = 4545;
+    public static final long DEFAULT_THINK_MS = 100;
+
+    // Instance variables
+    // Engines available for AI moves (taken by a session for one move, then returned)
+    private BlockingQueue<Engine> engines;
+    // Platform threads running the engines' searches
+    private ExecutorService searchThreads;
+    // Time the engine thinks per move
+    private long thinkMs;
+    // Counters reported while the server runs: sessions opened, games started, engine moves and their total time
+    private AtomicLong sessions = new AtomicLong();
+    private AtomicLong games = new AtomicLong();
+    private AtomicLong engineMoves = new AtomicLong();
+    private AtomicLong engineNanos = new AtomicLong();
+    // Log of finished games, or null if games aren't recorded
+    private GameRecordWriter records;
+
+    public GameServer(int engineCount, long thinkMs) {
+        this.thinkMs = thinkMs;
+        engines = new ArrayBlockingQueue<>(engineCount);
+        searchThreads = Executors.newFixedThreadPool(engineCount, runnable -> {
+            Thread thread = new Thread(runnable, "server-search");
+            thread.setDaemon(true);
+            return thread;
+        });
+        OpeningBook book = null;
+        if (new File(OpeningBook.DEFAULT_PATH).exists()) {
+            try {
+                book = OpeningBook.open(OpeningBook.DEFAULT_PATH);
+            } catch (IOException e) {
+                e.printStackTrace();
+            }
+        }
+        for (int i = 0; i < engineCount; i++) {
+            Engine engine = new Engine(new Connect4(true));
+            engine.setOpeningBook(book);
+            engines.add(engine);
+        }
+    }
+
+    public static void main(String[] args) throws IOException {
+        int port = args.length > 0 ? Integer.parseInt(args[0]) : DEFAULT_PORT;
+        int engineCount = args.length > 1 ? Integer.parseInt(args[1]) : Runtime.getRuntime().availableProcessors();
+        long thinkMs = args.length > 2 ? Long.parseLong(args[2]) : DEFAULT_THINK_MS;
+        EngineMetrics.register();
+        GameServer server = new GameServer(engineCount, thinkMs);
+        if (args.length > 3) {
+            server.recordGames(args[3]);
+        }
+        server.serve(port);
+    }
+
+    // Appends every game finished from now on to the given game record file (written when the buffer fills up, every
+    // 10 seconds, and when the server shuts down)
+    public void recordGames(String path) throws IOException {
+        records = new GameRecordWriter(path);
+        GameRecordWriter writer = records;
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+            try {
+                writer.close();
+            } catch (IOException e) {
+                e.printStackTrace();
+            }
+        }));
+    }
+
+    // Accepts connections on the given local port forever, one virtual thread per connection
+    public void serve(int port) throws IOException {
+        try (ServerSocket server = new ServerSocket(port, 1024, InetAddress.getLoopbackAddress());
+             ExecutorService connections = Executors.newVirtualThreadPerTaskExecutor()) {
+            System.out.printf("Listening on %s:%d with %d engines (%d ms per move)%n",
+                    server.getInetAddress().getHostAddress(), server.getLocalPort(), engines.size(), thinkMs);
+            startReporter();
+            while (true) {
+                Socket socket = server.accept();
+                connections.execute(() -> serveSession(socket));
+            }
+        }
+    }
+
+    // Runs one session: reads commands from the connection until it closes or sends QUIT
+    private void serveSession(Socket socket) {
+        sessions.incrementAndGet();
+        try (socket;
+             BufferedReader in = new BufferedReader(new InputStreamReader(socket.getInputStream(),
+                     StandardCharsets.US_ASCII));
+             PrintWriter out = new PrintWriter(socket.getOutputStream(), false, StandardCharsets.US_ASCII)) {
+            socket.setTcpNoDelay(true);
+            Connect4 game = null;
+            String line;
+            while ((line = in.readLine()) != null) {
+                String[] parts = line.trim().split("\\s+");
+                String command = parts[0].toUpperCase();
+                if (command.equals("QUIT")) {
+                    out.println("BYE");
+                    out.flush();
+                    break;
+                } else if (command.equals("NEW")) {
+                    boolean singlePlayer = parts.length < 2 || !parts[1].equalsIgnoreCase("TWO");
+                    game = new Connect4(singlePlayer);
+                    games.incrementAndGet();
+                    out.println("OK NEW");
+                } else if (command.equals("BOARD") && game != null) {
+                    out.println("BOARD " + boardString(game));
+                } else if (command.equals("MOVE") && game != null) {
+                    playMove(game, parts, out);
+                } else if (game == null && (command.equals("BOARD") || command.equals("MOVE"))) {
+                    out.println("ERROR no game, send NEW first");
+                } else {
+                    out.println("ERROR unknown command");
+                }
+                out.flush();
+            }
+        } catch (IOException e) {
+            // The client went away; nothing to clean up besides the socket
+        }
+    }
+
+    // Plays a player's move (and the engine's reply in single player games), writing the replies
+    private void playMove(Connect4 game, String[] parts, PrintWriter out) {
+        if (game.gameOver) {
+            out.println("ERROR game over, send NEW");
+            return;
+        }
+        int row;
+        int col;
+        try {
+            row = Integer.parseInt(parts[1]);
+            col = Integer.parseInt(parts[2]);
+        } catch (NumberFormatException | ArrayIndexOutOfBoundsException e) {
+            out.println("ERROR usage: MOVE <row> <col>");
+            return;
+        }
+        if (!game.takeTurn(row, col)) {
+            out.println("ERROR illegal move");
+            return;
+        }
+        out.println("OK MOVE " + row + " " + col);
+        if (!game.gameOver && game.isSinglePlayer) {
+            Move move = engineMove(game);
+            game.takeTurn(move.row, move.col);
+            out.println("AI " + move.row + " " + move.col);
+        }
+        out.println(status(game));
+        if (game.gameOver && records != null) {
+            try {
+                records.append(GameRecord.of(game));
+            } catch (IOException e) {
+                e.printStackTrace();
+            }
+        }
+    }
+
+    // Finds the engine's move for player 2 with an engine from the pool, waiting for one to be free if needed
+    private Move engineMove(Connect4 game) {
+        long start = System.nanoTime();
+        Engine engine;
+        try {
+            engine = engines.take();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while waiting for an engine", e);
+        }
+        try {
+            BitBoard board = game.bitBoard;
+            return searchThreads.submit(() -> engine.searchTimed(board, thinkMs, true)).get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while waiting for the engine", e);
+        } catch (ExecutionException e) {
+            throw new IllegalStateException("Engine search failed", e.getCause());
+        } finally {
+            engines.add(engine);
+            engineMoves.incrementAndGet();
+            engineNanos.addAndGet(System.nanoTime() - start);
+        }
+    }
+
+    // Returns the status line of the game: WIN <player>, DRAW or TURN <player to move>
+    private static String status(Connect4 game) {
+        // takeTurn doesn't switch turns after a win, so the winner is the player to move
+        int player = game.isTurnP1 ? 1 : 2;
+        if (game.isDraw) {
+            return "DRAW";
+        }
+        if (game.gameOver) {
+            return "WIN " + player;
+        }
+        return "TURN " + player;
+    }
+
+    // Returns the board as one digit per cell, row by row
+    private static String boardString(Connect4 game) {
+        StringBuilder cells = new StringBuilder();
+        for (int[] row : game.board) {
+            for (int cell : row) {
+                cells.append(cell);
+            }
+        }
+        return cells.toString();
+    }
+
+    // Prints sessions/sec, games/sec and the average engine move latency (including waiting for an engine) every
+    // 10 seconds while there is activity
+    private void startReporter() {
+        Thread reporter = new Thread(() -> {
+            long lastSessions = 0;
+            long lastGames = 0;
+            long lastMoves = 0;
+            long lastNanos = 0;
+            while (true) {
+                try {
+                    Thread.sleep(10_000);
+                } catch (InterruptedException e) {
+                    return;
+                }
+                long s = sessions.get();
+                long g = games.get();
+                long m = engineMoves.get();
+                long n = engineNanos.get();
+                if (records != null) {
+                    try {
+                        records.flush();
+                    } catch (IOException e) {
+                        e.printStackTrace();
+                    }
+                }
+                if (g != lastGames || m != lastMoves) {
+                    System.out.printf("sessions/sec=%.1f games/sec=%.1f engine moves/sec=%.1f avg move ms=%.2f%n",
+                            (s - lastSessions) / 10.0, (g - lastGames) / 10.0, (m - lastMoves) / 10.0,
+                            m == lastMoves ? 0 : (n - lastNanos) / 1e6 / (m - lastMoves));
+                }
+                lastSessions = s;
+                lastGames = g;
+                lastMoves = m;
+                lastNanos = n;
+            }
+        }, "server-stats");
+        reporter.setDaemon(true);
+        reporter.start();
+    }
+}
@@ -0,0 +1,388 @@
+import java.util.Arrays;
+import java.util.Random;
+
+public final class GridBoard {
+    // Board of any size, for the scalable engine (GridEngine)
+    // Cells are stored in a 1D array surrounded by a one-cell border of BORDER cells, so a streak can be followed in
+    // any direction without bounds checks (cell index = (row + 1) * width + col + 1)
+    // Two things are kept up to date every time a piece is placed or removed, so neither needs a scan of the board:
+    // - the evaluate() score: every row, column and diagonal keeps its own streak score, and a move only rescans the
+    //   4 lines through its cell
+    // - the candidate moves: the empty cells within radius of at least one piece, so the number of moves searched
+    //   grows with the number of pieces instead of the area of the board
+
+    // Row and column increments of the 4 line directions: horizontal, vertical, and the two diagonals
+    public static final int[][] DIRECTIONS = {{0, 1}, {1, 0}, {1, 1}, {1, -1}};
+    // Value of the border cells around the board
+    public static final int BORDER = 3;
+    // Score of a won game (far above any heuristic score, which grows with the win length)
+    public static final int WIN_SCORE = 1000000;
+    // Default distance from existing pieces within which empty cells are candidate moves
+    public static final int DEFAULT_RADIUS = 2;
+
+    // Instance variables
+    // Number of rows and columns, streak length needed to win, and the width of a row including the border
+    public final int size;
+    public final int winLength;
+    public final int width;
+    // Contents of every cell: 0 = empty, 1 = player 1, 2 = player 2, BORDER = off the board
+    public final int[] cells;
+    // Index offset of each of the 4 directions
+    public final int[] steps = new int[4];
+    // Zobrist hash of the pieces on the board, and the random keys of each [player][cell]
+    public long hash;
+    private long[][] zobrist;
+    // Number of pieces on the board
+    private int stones;
+    // Tiered scores of the game, [streakLength][openEnds], and gapped streak scores, [pieces]
+    private int[][] tieredScores;
+    private int[] gappedScores;
+
+    // Candidate moves: the cells within radius of each cell, the number of pieces within radius of each cell, and
+    // the set of empty cells with at least one such piece (candidates[0..candidateCount), with the position of each
+    // cell in it, or -1)
+    private int[][] nearby;
+    private int[] nearCount;
+    private int[] candidates;
+    private int[] candidatePositions;
+    private int candidateCount;
+
+    // Lines: first cell, step and length of each line, and the line of each direction through each cell (at index
+    // cell * 4 + direction)
+    private int[] lineStarts;
+    private int[] lineSteps;
+    private int[] lineLengths;
+    private int[] cellLines;
+    // Current streak score and winners (bit 1 = player 1, bit 2 = player 2) of each line
+    private int[] lineScores;
+    private int[] lineWinners;
+    // Running heuristic score (player 2 positive), and number of winning lines of each player
+    private int score;
+    private int[] winningLines = new int[3];
+    // Line scores and winners replaced by each move, so unmake can restore them without rescanning
+    private int[] undoScores;
+    private int[] undoWinners;
+    private int undoTop;
+    // Winners of the line scanned by the last call to scanLine
+    private int scanWinners;
+
+    // Creates an empty board with the size, win length and tiered scores of the given game
+    public GridBoard(Connect4 game) {
+        this(game, DEFAULT_RADIUS);
+    }
+
+    // Creates an empty board whose candidate moves are the empty cells within the given radius of a piece
+    public GridBoard(Connect4 game, int radius) {
+        size = game.BOARD_SIZE;
+        winLength = game.WIN_LENGTH;
+        width = size + 2;
+        cells = new int[width * width];
+        Arrays.fill(cells, BORDER);
+        for (int row = 0; row < size; row++) {
+            for (int col = 0; col < size; col++) {
+                cells[index(row, col)] = 0;
+            }
+        }
+        for (int d = 0; d < 4; d++) {
+            steps[d] = DIRECTIONS[d][0] * width + DIRECTIONS[d][1];
+        }
+
+        tieredScores = new int[winLength][3];
+        for (int length = 1; length < winLength; length++) {
+            for (int openEnds = 0; openEnds <= 2; openEnds++) {
+                tieredScores[length][openEnds] = game.tieredScore(length, openEnds);
+            }
+        }
+        gappedScores = new int[winLength];
+        for (int pieces = 2; pieces < winLength; pieces++) {
+            gappedScores[pieces] = game.gappedScore(pieces);
+        }
+
+        zobrist = new long[3][cells.length];
+        Random random = new Random(0x5EED_C0FFEEL + size);
+        for (int player = 1; player <= 2; player++) {
+            for (int i = 0; i < cells.length; i++) {
+                zobrist[player][i] = random.nextLong();
+            }
+        }
+
+        buildNearby(radius);
+        buildLines();
+        undoScores = new int[size * size * 4];
+        undoWinners = new int[size * size * 4];
+    }
+
+    // Builds a board from a 2D array board of the given game (0 = empty, 1 = player 1, 2 = player 2)
+    public static GridBoard fromArray(Connect4 game, int[][] board) {
+        GridBoard gridBoard = new GridBoard(game);
+        for (int row = 0; row < gridBoard.size; row++) {
+            for (int col = 0; col < gridBoard.size; col++) {
+                if (board[row][col] != 0) {
+                    gridBoard.make(gridBoard.index(row, col), board[row][col]);
+                }
+            }
+        }
+        return gridBoard;
+    }
+
+    // Returns the cell index of the given row and column
+    public int index(int row, int col) {
+        return (row + 1) * width + col + 1;
+    }
+
+    // Returns the row of the given cell index
+    public int rowOf(int index) {
+        return index / width - 1;
+    }
+
+    // Returns the column of the given cell index
+    public int colOf(int index) {
+        return index % width - 1;
+    }
+
+    // Returns true if no empty cells are left
+    public boolean isFull() {
+        return stones == size * size;
+    }
+
+    // Returns the number of pieces on the board
+    public int stones() {
+        return stones;
+    }
+
+    // Returns the number of candidate moves, and the candidate at the given position (0 to candidateCount() - 1)
+    public int candidateCount() {
+        return candidateCount;
+    }
+
+    public int candidate(int i) {
+        return candidates[i];
+    }
+
+    // Places a piece of the given player on the given (empty) cell
+    public void make(int index, int player) {
+        cells[index] = player;
+        hash ^= zobrist[player][index];
+        stones++;
+
+        removeCandidate(index);
+        for (int near : nearby[index]) {
+            nearCount[near]++;
+            if (cells[near] == 0) {
+                addCandidate(near);
+            }
+        }
+
+        for (int d = 0; d < 4; d++) {
+            int line = cellLines[index * 4 + d];
+            undoScores[undoTop] = lineScores[line];
+            undoWinners[undoTop] = lineWinners[line];
+            undoTop++;
+            setLine(line, scanLine(line), scanWinners);
+        }
+    }
+
+    // Removes the piece of the given player from the given cell; moves must be unmade in reverse order
+    public void unmake(int index, int player) {
+        for (int d = 3; d >= 0; d--) {
+            undoTop--;
+            setLine(cellLines[index * 4 + d], undoScores[undoTop], undoWinners[undoTop]);
+        }
+
+        cells[index] = 0;
+        hash ^= zobrist[player][index];
+        stones--;
+
+        for (int near : nearby[index]) {
+            nearCount[near]--;
+            if (nearCount[near] == 0 && cells[near] == 0) {
+                removeCandidate(near);
+            }
+        }
+        if (nearCount[index] > 0) {
+            addCandidate(index);
+        }
+    }
+
+    // Returns the score of the board: +WIN_SCORE if player 2 has won, -WIN_SCORE if player 1 has won, otherwise the
+    // heuristic streak score (player 2 positive)
+    public int evaluate() {
+        if (winningLines[1] > 0) {
+            return -WIN_SCORE;
+        }
+        if (winningLines[2] > 0) {
+            return WIN_SCORE;
+        }
+        return score;
+    }
+
+    // Returns the heuristic streak score of the board, ignoring wins
+    public int score() {
+        return score;
+    }
+
+    // Returns the player with a winning streak on the board, or 0 if neither has one
+    public int winner() {
+        if (winningLines[1] > 0) {
+            return 1;
+        }
+        if (winningLines[2] > 0) {
+            return 2;
+        }
+        return 0;
+    }
+
+    // Returns how much the given player would gain by playing on the given empty cell: the change of the streak
+    // score from that player's point of view, or WIN_SCORE if the move wins the game
+    public int gain(int index, int player) {
+        cells[index] = player;
+        int change = 0;
+        boolean wins = false;
+        for (int d = 0; d < 4; d++) {
+            int line = cellLines[index * 4 + d];
+            change += scanLine(line) - lineScores[line];
+            wins |= (scanWinners & player) != 0;
+        }
+        cells[index] = 0;
+        if (wins) {
+            return WIN_SCORE;
+        }
+        return player == 2 ? change : -change;
+    }
+
+    // Replaces the score and winners of a line, updating the running totals
+    private void setLine(int line, int newScore, int newWinners) {
+        score += newScore - lineScores[line];
+        int oldWinners = lineWinners[line];
+        winningLines[1] += (newWinners & 1) - (oldWinners & 1);
+        winningLines[2] += (newWinners >> 1) - (oldWinners >> 1);
+        lineScores[line] = newScore;
+        lineWinners[line] = newWinners;
+    }
+
+    // Returns the streak score of a line (player 2 positive) and sets scanWinners to the players with a winning
+    // streak on it; every streak is scored with tieredScores[streakLength][openEnds], and every gap between two
+    // streaks of the same player with gappedScores[pieces], just like Connect4.evaluate
+    private int scanLine(int line) {
+        int step = lineSteps[line];
+        int index = lineStarts[line];
+        int end = index + step * lineLengths[line];
+        int lineScore = 0;
+        int winners = 0;
+        while (index != end) {
+            int player = cells[index];
+            if (player == 0) {
+                index += step;
+                continue;
+            }
+            // Follow the streak to its end (the cell before the start is empty, the other player, or the border)
+            int start = index;
+            int length = 0;
+            while (index != end && cells[index] == player) {
+                length++;
+                index += step;
+            }
+            if (length >= winLength) {
+                winners |= player;
+                continue;
+            }
+            int openEnds = 0;
+            if (cells[start - step] == 0) {
+                openEnds++;
+            }
+            if (cells[index] == 0) {
+                openEnds++;
+            }
+            int streakScore = tieredScores[length][openEnds];
+            // A single empty cell and then more of the player's pieces: a gapped streak
+            if (index != end && cells[index] == 0 && cells[index + step] == player) {
+                int pieces = length;
+                for (int next = index + step; next != end && cells[next] == player; next += step) {
+                    pieces++;
+                }
+                streakScore += gappedScores[Math.min(pieces, winLength - 1)];
+            }
+            if (player == 2) {
+                lineScore += streakScore;
+            } else {
+                lineScore -= streakScore;
+            }
+        }
+        scanWinners = winners;
+        return lineScore;
+    }
+
+    // Adds an empty cell to the candidate set (if it isn't in it already)
+    private void addCandidate(int index) {
+        if (candidatePositions[index] == -1) {
+            candidatePositions[index] = candidateCount;
+            candidates[candidateCount++] = index;
+        }
+    }
+
+    // Removes a cell from the candidate set (if it is in it), moving the last candidate into its place
+    private void removeCandidate(int index) {
+        int position = candidatePositions[index];
+        if (position != -1) {
+            int last = candidates[--candidateCount];
+            candidates[position] = last;
+            candidatePositions[last] = position;
+            candidatePositions[index] = -1;
+        }
+    }
+
+    // Finds the cells within radius (in both rows and columns) of every cell
+    private void buildNearby(int radius) {
+        nearby = new int[cells.length][];
+        nearCount = new int[cells.length];
+        candidates = new int[cells.length];
+        candidatePositions = new int[cells.length];
+        Arrays.fill(candidatePositions, -1);
+        for (int row = 0; row < size; row++) {
+            for (int col = 0; col < size; col++) {
+                int[] list = new int[(2 * radius + 1) * (2 * radius + 1)];
+                int count = 0;
+                for (int r = Math.max(0, row - radius); r <= Math.min(size - 1, row + radius); r++) {
+                    for (int c = Math.max(0, col - radius); c <= Math.min(size - 1, col + radius); c++) {
+                        if (r != row || c != col) {
+                            list[count++] = index(r, c);
+                        }
+                    }
+                }
+                nearby[index(row, col)] = Arrays.copyOf(list, count);
+            }
+        }
+    }
+
+    // Finds every line of the board, and the line of each direction through each cell
+    private void buildLines() {
+        int maxLines = 4 * 2 * size;
+        lineStarts = new int[maxLines];
+        lineSteps = new int[maxLines];
+        lineLengths = new int[maxLines];
+        cellLines = new int[cells.length * 4];
+        int lineCount = 0;
+        for (int d = 0; d < 4; d++) {
+            for (int row = 0; row < size; row++) {
+                for (int col = 0; col < size; col++) {
+                    int index = index(row, col);
+                    // A line starts at a cell whose previous cell in this direction is off the board
+                    if (cells[index - steps[d]] != BORDER) {
+                        continue;
+                    }
+                    int length = 0;
+                    for (int i = index; cells[i] != BORDER; i += steps[d]) {
+                        cellLines[i * 4 + d] = lineCount;
+                        length++;
+                    }
+                    lineStarts[lineCount] = index;
+                    lineSteps[lineCount] = steps[d];
+                    lineLengths[lineCount] = length;
+                    lineCount++;
+                }
+            }
+        }
+        lineScores = new int[lineCount];
+        lineWinners = new int[lineCount];
+    }
+}
@@ -0,0 +1,343 @@
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+public class GridEngine {
+    // Alpha-beta search engine for boards of any size and win length (GridBoard), e.g. 19x19 Connect-5
+    // Engine searches every empty cell of the 7x7 bitboard, which is hopeless on a 361-cell board; this engine only
+    // searches the candidate cells near existing pieces, ranks them by how much they build the mover's own streaks
+    // plus how much they break the opponent's, and searches at most maxMoves of the best ones at each node
+    // Otherwise it works like Engine: iterative deepening within a time budget, a transposition table, killer moves
+    // and history scores
+
+    // Maximum search depth supported by the per-ply buffers
+    public static final int MAX_DEPTH = 32;
+    // Default number of candidate moves searched at each node
+    public static final int DEFAULT_MAX_MOVES = 12;
+    // Move ordering scores for each category of move
+    private static final int FIRST_ORDER = 1 << 30;
+    private static final int BLOCK_ORDER = 1 << 28;
+    private static final int KILLER_ORDER = 1 << 27;
+    // Zobrist key XOR-ed into the board hash when the maximizing player (player 2) is to move
+    private static final long MAXING_KEY = 0x9E3779B97F4A7C15L;
+
+    // Instance variables
+    // Number of nodes visited by the last search
+    public long nodes;
+    // Transposition table kept between searches, or null if disabled
+    public TranspositionTable table;
+    // Depth of the deepest search that finished during the last call to search or searchTimed
+    public int completedDepth;
+    // Number of candidate moves searched at each node (moves that win or block a win are never cut)
+    public int maxMoves = DEFAULT_MAX_MOVES;
+    // Moves of each ply, with the ordering score of each move
+    private int[][] moveBuffers;
+    private int[][] orderBuffers;
+    // Two killer moves per ply, -1 if none
+    private int[][] killers = new int[MAX_DEPTH][2];
+    // History score of each [player][cell], increased every time the move causes a cutoff
+    private int[][] history;
+    // Board size the buffers were allocated for
+    private int cellCount;
+    // Set from another thread to make the current search stop as soon as possible
+    private volatile boolean stopRequested;
+    // Time (from System.currentTimeMillis) at which the current search must stop, and whether it ran out of time
+    private long deadline;
+    private boolean stopped;
+    // Thread running asynchronous searches, created when first needed
+    private ExecutorService searchThread;
+
+    public GridEngine() {
+        this(Engine.DEFAULT_HASH_MB);
+    }
+
+    // Creates an engine with a transposition table of the given size in megabytes (0 disables the table)
+    public GridEngine(int hashMb) {
+        if (hashMb > 0) {
+            table = new TranspositionTable(hashMb);
+        }
+    }
+
+    // Return the best move for the given player on the given board, searching to the given depth
+    // The board is modified during the search but restored to its original state before returning
+    public Move search(GridBoard board, int depth, boolean isMaxing) {
+        stopRequested = false;
+        startSearch(board, Long.MAX_VALUE);
+        depth = Math.min(depth, MAX_DEPTH - 1);
+        int[] result = searchRoot(board, depth, isMaxing, -1);
+        completedDepth = depth;
+        return toMove(board, result);
+    }
+
+    // Return the best move for the given player on the given board, using about the given number of milliseconds
+    public Move searchTimed(GridBoard board, long timeMs, boolean isMaxing) {
+        stopRequested = false;
+        return runTimedSearch(board, timeMs, MAX_DEPTH - 1, isMaxing);
+    }
+
+    // Starts a timed search, stopping after the given depth at the latest, on the engine's own thread and returns
+    // right away; the future completes with the best move (null if cancelled before depth 1 finished)
+    // The board is searched directly, so it must not be changed until the future completes; a cancel made after this
+    // call stops the search even if it hasn't started yet
+    public CompletableFuture<Move> searchAsync(GridBoard board, long timeMs, int maxDepth, boolean isMaxing) {
+        if (searchThread == null) {
+            searchThread = Executors.newSingleThreadExecutor(runnable -> {
+                Thread thread = new Thread(runnable, "grid-engine-search");
+                thread.setDaemon(true);
+                return thread;
+            });
+        }
+        stopRequested = false;
+        return CompletableFuture.supplyAsync(() -> runTimedSearch(board, timeMs, maxDepth, isMaxing), searchThread);
+    }
+
+    // Runs searchTimed up to the given depth, without clearing an earlier cancel request
+    private Move runTimedSearch(GridBoard board, long timeMs, int lastDepth, boolean isMaxing) {
+        long startTime = System.currentTimeMillis();
+        startSearch(board, startTime + timeMs);
+
+        int maxDepth = Math.min(board.size * board.size - board.stones(), Math.min(lastDepth, MAX_DEPTH - 1));
+        int[] best = null;
+        for (int depth = 1; depth <= maxDepth; depth++) {
+            int[] result = searchRoot(board, depth, isMaxing, best == null ? -1 : best[0]);
+            // Throw away the unfinished search
+            if (stopped) {
+                break;
+            }
+            best = result;
+            completedDepth = depth;
+
+            // Stop once the result is a forced win or loss, or if the next depth most likely won't finish in time
+            long elapsed = System.currentTimeMillis() - startTime;
+            if (Math.abs(best[1]) == GridBoard.WIN_SCORE || elapsed * 2 > timeMs) {
+                break;
+            }
+        }
+        return toMove(board, best);
+    }
+
+    // Return the best move for the player to move in the given game, using about the given number of milliseconds
+    public Move searchTimed(Connect4 game, long timeMs) {
+        return searchTimed(GridBoard.fromArray(game, game.board), timeMs, !game.isTurnP1);
+    }
+
+    // Asks the running search to stop as soon as possible
+    public void cancel() {
+        stopRequested = true;
+    }
+
+    // Resets the per-search state (and sizes the buffers for the board), stopping the search at the given time
+    private void startSearch(GridBoard board, long deadline) {
+        if (cellCount != board.cells.length) {
+            cellCount = board.cells.length;
+            moveBuffers = new int[MAX_DEPTH][cellCount];
+            orderBuffers = new int[MAX_DEPTH][cellCount];
+            history = new int[3][cellCount];
+            if (table != null) {
+                table.clear();
+            }
+        }
+        this.deadline = deadline;
+        stopped = false;
+        nodes = 0;
+        completedDepth = 0;
+        for (int[] plyKillers : killers) {
+            plyKillers[0] = -1;
+            plyKillers[1] = -1;
+        }
+    }
+
+    // Searches the root to the given depth and returns {best cell, score} ({-1, score} if there is no move)
+    private int[] searchRoot(GridBoard board, int depth, boolean isMaxing, int firstMove) {
+        int player = isMaxing ? 2 : 1;
+        int count = orderMoves(board, player, 0, firstMove);
+        int[] moves = moveBuffers[0];
+
+        int bestCell = -1;
+        int bestScore = isMaxing ? -Integer.MAX_VALUE : Integer.MAX_VALUE;
+        for (int i = 0; i < count; i++) {
+            int cell = moves[i];
+            board.make(cell, player);
+            int score;
+            if (isMaxing) {
+                score = alphaBeta(board, depth - 1, 1, bestScore, Integer.MAX_VALUE, false);
+            } else {
+                score = alphaBeta(board, depth - 1, 1, -Integer.MAX_VALUE, bestScore, true);
+            }
+            board.unmake(cell, player);
+            if (stopped) {
+                break;
+            }
+            if (bestCell == -1 || (isMaxing ? score > bestScore : score < bestScore)) {
+                bestScore = score;
+                bestCell = cell;
+            }
+        }
+        return new int[]{bestCell, bestScore};
+    }
+
+    // Return the minimax score of the given board, only exact if it lies strictly between alpha and beta
+    private int alphaBeta(GridBoard board, int depth, int ply, int alpha, int beta, boolean isMaxing) {
+        nodes++;
+        if ((nodes & 1023) == 0) {
+            if (stopRequested || (completedDepth > 0 && System.currentTimeMillis() >= deadline)) {
+                stopped = true;
+            }
+        }
+        if (stopped) {
+            return 0;
+        }
+        // Return the score right away if the game is over, the depth limit is reached or the board is full
+        if (board.winner() != 0 || depth == 0 || board.isFull()) {
+            return board.evaluate();
+        }
+
+        // Reuse the stored result of this position if it was searched at least as deep and settles this window
+        long key = isMaxing ? board.hash ^ MAXING_KEY : board.hash;
+        int hashMove = -1;
+        if (table != null) {
+            long entry = table.probe(key);
+            if (entry != TranspositionTable.NONE) {
+                hashMove = TranspositionTable.move(entry);
+                if (TranspositionTable.depth(entry) >= depth) {
+                    int stored = TranspositionTable.score(entry);
+                    int bound = TranspositionTable.bound(entry);
+                    if (bound == TranspositionTable.EXACT
+                            || (bound == TranspositionTable.LOWER && stored >= beta)
+                            || (bound == TranspositionTable.UPPER && stored <= alpha)) {
+                        return stored;
+                    }
+                }
+            }
+        }
+
+        int player = isMaxing ? 2 : 1;
+        int count = orderMoves(board, player, ply, hashMove);
+        int[] moves = moveBuffers[ply];
+
+        int originalAlpha = alpha;
+        int originalBeta = beta;
+        int bestScore = isMaxing ? -Integer.MAX_VALUE : Integer.MAX_VALUE;
+        int bestCell = -1;
+        for (int i = 0; i < count; i++) {
+            int cell = moves[i];
+            board.make(cell, player);
+            int score = alphaBeta(board, depth - 1, ply + 1, alpha, beta, !isMaxing);
+            board.unmake(cell, player);
+            if (stopped) {
+                return 0;
+            }
+
+            if (isMaxing) {
+                if (score > bestScore) {
+                    bestScore = score;
+                    bestCell = cell;
+                    alpha = Math.max(alpha, score);
+                }
+            } else {
+                if (score < bestScore) {
+                    bestScore = score;
+                    bestCell = cell;
+                    beta = Math.min(beta, score);
+                }
+            }
+            // The opponent already has a better option elsewhere, so the rest of the moves can be skipped
+            if (alpha >= beta) {
+                recordCutoff(cell, player, depth, ply);
+                break;
+            }
+        }
+
+        if (table != null) {
+            int bound;
+            if (bestScore <= originalAlpha) {
+                bound = TranspositionTable.UPPER;
+            } else if (bestScore >= originalBeta) {
+                bound = TranspositionTable.LOWER;
+            } else {
+                bound = TranspositionTable.EXACT;
+            }
+            table.store(key, depth, bestScore, bound, bestCell);
+        }
+        return bestScore;
+    }
+
+    // Fills the move buffer of the given ply with the best candidate moves and returns how many were kept
+    // A cell that wins immediately is returned alone; otherwise the order is the given first move, cells that block an
+    // immediate win of the opponent,
+    // then by attack + defense value (what the move gains for the player plus what it would gain the opponent),
+    // with killer moves and history scores breaking close calls
+    // Only the first maxMoves moves are kept, but winning and blocking moves are always kept
+    private int orderMoves(GridBoard board, int player, int ply, int firstMove) {
+        int[] moves = moveBuffers[ply];
+        int[] order = orderBuffers[ply];
+        int opponent = 3 - player;
+
+        // With no pieces on the board yet there are no candidates, so start in the center
+        if (board.candidateCount() == 0) {
+            if (board.isFull()) {
+                return 0;
+            }
+            moves[0] = board.index(board.size / 2, board.size / 2);
+            return 1;
+        }
+
+        int count = 0;
+        int forced = 0;
+        for (int i = 0; i < board.candidateCount(); i++) {
+            int cell = board.candidate(i);
+            int attack = board.gain(cell, player);
+            int defense = board.gain(cell, opponent);
+
+            // A move that wins right away is the only one worth searching
+            if (attack == GridBoard.WIN_SCORE) {
+                moves[0] = cell;
+                return 1;
+            }
+
+            int score;
+            if (defense == GridBoard.WIN_SCORE) {
+                score = BLOCK_ORDER;
+                forced++;
+            } else {
+                score = Math.min(attack + defense, KILLER_ORDER / 2) + history[player][cell];
+                if (cell == killers[ply][0] || cell == killers[ply][1]) {
+                    score += KILLER_ORDER;
+                }
+            }
+            if (cell == firstMove) {
+                score += FIRST_ORDER;
+            }
+
+            // Insertion sort by descending score
+            int j = count;
+            while (j > 0 && order[j - 1] < score) {
+                moves[j] = moves[j - 1];
+                order[j] = order[j - 1];
+                j--;
+            }
+            moves[j] = cell;
+            order[j] = score;
+            count++;
+        }
+
+        return Math.min(count, Math.max(maxMoves, forced + 1));
+    }
+
+    // Remembers a move that caused a cutoff, as a killer move for its ply and in the history table
+    private void recordCutoff(int cell, int player, int depth, int ply) {
+        if (killers[ply][0] != cell) {
+            killers[ply][1] = killers[ply][0];
+            killers[ply][0] = cell;
+        }
+        history[player][cell] = Math.min(history[player][cell] + depth * depth, KILLER_ORDER / 2);
+    }
+
+    // Converts a {cell, score} result to a Move (null if there is no move)
+    private Move toMove(GridBoard board, int[] result) {
+        if (result == null || result[0] == -1) {
+            return null;
+        }
+        return new Move(board.rowOf(result[0]), board.colOf(result[0]), result[1]);
+    }
+}
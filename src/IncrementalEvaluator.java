@@ -0,0 +1,108 @@
+public class IncrementalEvaluator {
+    // Keeps the evaluate() score of a board up to date as pieces are placed and removed during a search
+    // Every row, column and diagonal (a "line") keeps its index in the game's line tables (see LineTable): one bit per
+    // cell for each player, so placing or removing a piece sets or clears one bit of the 4 lines through its cell, and
+    // the running score is adjusted by the difference of those 4 lines' table scores; reading the score is O(1)
+    // The number of lines each player can still win on is kept the same way, from the entries' open flags, so a dead
+    // position (no winning streak possible for either player, a certain draw) is also detected in O(1)
+    // The tables are taken from the game at every reset, so eval weight changes apply from the next search
+
+    // Instance variables
+    // Game whose line tables are used, and the tables of the current search
+    private Connect4 game;
+    private LineTable table;
+    // Current position of each line in the table's entries array
+    private int[] lineIndexes = new int[LineTable.LINE_COUNT];
+    // Running heuristic score of the board, number of winning lines of each player, and number of lines each player
+    // can still win on
+    private int score;
+    private int[] winningLines = new int[3];
+    private int[] openLines = new int[3];
+
+    public IncrementalEvaluator(Connect4 game) {
+        this.game = game;
+        this.table = game.lineTable();
+    }
+
+    // Recomputes every line index and the running score from scratch for the given board
+    public void reset(BitBoard board) {
+        table = game.lineTable();
+        score = 0;
+        winningLines[1] = 0;
+        winningLines[2] = 0;
+        openLines[1] = 0;
+        openLines[2] = 0;
+        for (int line = 0; line < LineTable.LINE_COUNT; line++) {
+            lineIndexes[line] = LineTable.index(board, line);
+            addLine(line, 1);
+        }
+    }
+
+    // Places a piece on the board and updates the score
+    public void make(BitBoard board, int cell, int player) {
+        board.place(cell, player);
+        update(cell, player, 1);
+    }
+
+    // Removes a piece from the board and updates the score
+    public void unmake(BitBoard board, int cell, int player) {
+        board.remove(cell, player);
+        update(cell, player, -1);
+    }
+
+    // Returns the score evaluate() would give the current board
+    public int evaluate() {
+        if (winningLines[1] > 0) {
+            return -1000;
+        }
+        if (winningLines[2] > 0) {
+            return 1000;
+        }
+        return score;
+    }
+
+    // Returns the heuristic score of the current board, ignoring wins
+    public int score() {
+        return score;
+    }
+
+    // Returns the player with a winning streak on the current board, or 0 if neither has one
+    public int winner() {
+        if (winningLines[1] > 0) {
+            return 1;
+        }
+        if (winningLines[2] > 0) {
+            return 2;
+        }
+        return 0;
+    }
+
+    // Returns true if neither player can complete a winning streak anywhere any more (a full board included), so the
+    // game is a draw whatever is played
+    public boolean isDead() {
+        return openLines[1] == 0 && openLines[2] == 0;
+    }
+
+    // Sets (sign = 1) or clears (sign = -1) the player's bit of the cell in its 4 lines
+    private void update(int cell, int player, int sign) {
+        int index = cell * 4;
+        for (int direction = 0; direction < 4; direction++) {
+            int line = LineTable.CELL_LINES[index + direction];
+            int bit = 1 << LineTable.CELL_POSITIONS[index + direction];
+            addLine(line, -1);
+            lineIndexes[line] += sign * (player == 1 ? bit : bit << LineTable.LINE_LENGTHS[line]);
+            addLine(line, 1);
+        }
+    }
+
+    // Adds (sign = 1) or subtracts (sign = -1) the score, wins and open lines of the line's current entry to the
+    // running totals
+    private void addLine(int line, int sign) {
+        int entry = table.entries[lineIndexes[line]];
+        score += sign * (entry >> LineTable.FLAG_BITS);
+        winningLines[1] += sign * (entry & 1);
+        winningLines[2] += sign * (entry >> 1 & 1);
+        openLines[1] += sign * (entry >> 2 & 1);
+        openLines[2] += sign * (entry >> 3 & 1);
+    }
+}
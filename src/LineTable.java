@@ -0,0 +1,162 @@
+import java.util.Arrays;
+
+public class LineTable {
+    // Precomputed score of every possible contents of a row, column or diagonal (a "line") of the 7x7 board
+    // The contents of a line are indexed by two bitmasks, the cells of the line taken by player 1 and by player 2
+    // (bit i = the line's i-th cell): index = player1 | player2 << length, so scoring a board is one table lookup per
+    // line, and the table can score any shape along a line, gapped ones (X_XX) included
+    // Each entry packs the line's score (player 2 positive) with its flags in one int, score * 16 + flags (bit 1 =
+    // player 1 has a winning streak on the line, bit 2 = player 2 does, bit 4 = player 1 can still win on the line,
+    // i.e. it has WIN_LENGTH cells in a row without a piece of player 2, bit 8 = player 2 can), and the tables of every
+    // line length are laid out one after the other in a single array, so a lookup is one array read
+    // The bitmask of a line is gathered straight from a bitboard with one multiply: after masking out the line's
+    // cells and shifting its first cell to bit 0, its i-th cell is at bit i * shift, and the magic multiplier has a bit
+    // at 56 - (shift - 1) * i for each i, which moves cell i (and no other product bit) to bit 56 + i
+    // Tables are built from the weights of a Connect4 (see Connect4.lineScore) by Connect4.lineTable, which builds
+    // them again after a weight changes
+
+    // Flags of an entry: winning streak of player 1 / player 2, line still open to player 1 / player 2, and the number
+    // of bits they take
+    public static final int WIN_1 = 1;
+    public static final int WIN_2 = 2;
+    public static final int OPEN_1 = 4;
+    public static final int OPEN_2 = 8;
+    public static final int FLAG_BITS = 4;
+
+    // Number of lines on the board (7 rows, 7 columns and 13 diagonals of each direction, corners included)
+    public static final int LINE_COUNT;
+    // Cells of each line (bitboard mask), bit index of its first cell, number of cells, gathering multiplier, and the
+    // start of the table of its length in the entries array
+    public static final long[] LINE_MASKS;
+    public static final int[] LINE_STARTS;
+    public static final int[] LINE_LENGTHS;
+    public static final long[] LINE_MAGICS;
+    public static final int[] LINE_OFFSETS;
+    // Start of the table of each line length in the entries array, and the size of the array
+    private static final int[] TABLE_OFFSETS = new int[BitBoard.SIZE + 2];
+    // Line through each cell in each direction of BitBoard.SHIFTS (at index cell * 4 + direction), and the position
+    // of the cell along it
+    public static final int[] CELL_LINES = new int[64 * 4];
+    public static final int[] CELL_POSITIONS = new int[64 * 4];
+
+    // Row and column increments of each direction, in the same order as BitBoard.SHIFTS
+    private static final int[][] DIRECTIONS = {{0, 1}, {1, 0}, {1, 1}, {1, -1}};
+
+    static {
+        long[] masks = new long[4 * BitBoard.SIZE * 2];
+        int[] starts = new int[masks.length];
+        int[] lengths = new int[masks.length];
+        long[] magics = new long[masks.length];
+        int count = 0;
+        for (int direction = 0; direction < 4; direction++) {
+            int dr = DIRECTIONS[direction][0];
+            int dc = DIRECTIONS[direction][1];
+            int shift = BitBoard.SHIFTS[direction];
+            for (int row = 0; row < BitBoard.SIZE; row++) {
+                for (int col = 0; col < BitBoard.SIZE; col++) {
+                    // A line starts at a cell whose previous cell in this direction is off the board
+                    if (inBounds(row - dr, col - dc)) {
+                        continue;
+                    }
+                    starts[count] = BitBoard.cell(row, col);
+                    int length = 0;
+                    for (int r = row, c = col; inBounds(r, c); r += dr, c += dc) {
+                        int cell = BitBoard.cell(r, c);
+                        masks[count] |= 1L << cell;
+                        magics[count] |= 1L << (56 - (shift - 1) * length);
+                        CELL_LINES[cell * 4 + direction] = count;
+                        CELL_POSITIONS[cell * 4 + direction] = length;
+                        length++;
+                    }
+                    lengths[count] = length;
+                    count++;
+                }
+            }
+        }
+        LINE_COUNT = count;
+        LINE_MASKS = Arrays.copyOf(masks, count);
+        LINE_STARTS = Arrays.copyOf(starts, count);
+        LINE_LENGTHS = Arrays.copyOf(lengths, count);
+        LINE_MAGICS = Arrays.copyOf(magics, count);
+
+        for (int length = 1; length <= BitBoard.SIZE; length++) {
+            TABLE_OFFSETS[length + 1] = TABLE_OFFSETS[length] + (1 << (2 * length));
+        }
+        LINE_OFFSETS = new int[count];
+        for (int line = 0; line < count; line++) {
+            LINE_OFFSETS[line] = TABLE_OFFSETS[LINE_LENGTHS[line]];
+        }
+    }
+
+    // Instance variables
+    // Entry (score * 16 + flags) of every index of every line length, at TABLE_OFFSETS[length] + index
+    public final int[] entries = new int[TABLE_OFFSETS[BitBoard.SIZE + 1]];
+
+    // Builds the tables with the weights of the given game
+    public LineTable(Connect4 game) {
+        for (int length = 1; length <= BitBoard.SIZE; length++) {
+            int full = (1 << length) - 1;
+            for (int player1 = 0; player1 <= full; player1++) {
+                // Player 2 can only have the cells player 1 doesn't
+                int free = full & ~player1;
+                for (int player2 = free; ; player2 = (player2 - 1) & free) {
+                    int flags = 0;
+                    if (BitBoard.streakStarts(player1, 1, game.WIN_LENGTH) != 0) {
+                        flags |= WIN_1;
+                    }
+                    if (BitBoard.streakStarts(player2, 1, game.WIN_LENGTH) != 0) {
+                        flags |= WIN_2;
+                    }
+                    // A player can still win on the line if some WIN_LENGTH cells in a row hold no opposing piece
+                    if (BitBoard.streakStarts(full & ~player2, 1, game.WIN_LENGTH) != 0) {
+                        flags |= OPEN_1;
+                    }
+                    if (BitBoard.streakStarts(full & ~player1, 1, game.WIN_LENGTH) != 0) {
+                        flags |= OPEN_2;
+                    }
+                    entries[TABLE_OFFSETS[length] + (player1 | player2 << length)] =
+                            game.lineScore(player1, player2, length) * (1 << FLAG_BITS) + flags;
+                    if (player2 == 0) {
+                        break;
+                    }
+                }
+            }
+        }
+    }
+
+    // Returns the bitmask of the cells of the line among the given pieces
+    public static int gather(long bits, int line) {
+        long product = ((bits & LINE_MASKS[line]) >>> LINE_STARTS[line]) * LINE_MAGICS[line];
+        return (int) (product >>> 56) & ((1 << LINE_LENGTHS[line]) - 1);
+    }
+
+    // Returns the position in the entries array of the line's current contents
+    public static int index(BitBoard board, int line) {
+        int contents = gather(board.pieces[1], line) | gather(board.pieces[2], line) << LINE_LENGTHS[line];
+        return LINE_OFFSETS[line] + contents;
+    }
+
+    // Returns the evaluate() score of the board: -1000 if player 1 has won, 1000 if player 2 has, otherwise the sum of
+    // the scores of every line
+    public int evaluate(BitBoard board) {
+        int score = 0;
+        int flags = 0;
+        for (int line = 0; line < LINE_COUNT; line++) {
+            int entry = entries[index(board, line)];
+            score += entry >> FLAG_BITS;
+            flags |= entry;
+        }
+        if ((flags & WIN_1) != 0) {
+            return -1000;
+        }
+        if ((flags & WIN_2) != 0) {
+            return 1000;
+        }
+        return score;
+    }
+
+    // Returns true if the (row, col) cell is inside the board boundaries
+    private static boolean inBounds(int row, int col) {
+        return row >= 0 && row < BitBoard.SIZE && col >= 0 && col < BitBoard.SIZE;
+    }
+}
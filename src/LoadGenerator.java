@@ -0,0 +1,141 @@
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.PrintWriter;
+import java.net.InetAddress;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicLong;
+
+public class LoadGenerator {
+    // Load-generating client for GameServer
+    // Runs many simulated players at once (one virtual thread each); every player repeatedly opens a session, plays a
+    // single player game against the server's engine with random moves, and quits
+    // Reports sessions/sec and the latency of each move (from sending MOVE to receiving the final status line, which
+    // includes the engine's reply and any wait for a free engine)
+    // Usage: java LoadGenerator [port] [players] [games per player] [seed]
+
+    // Instance variables
+    // Port of the server on this machine
+    private int port;
+    // Finished sessions, and the move latencies in nanoseconds (one array per player)
+    private AtomicLong finishedSessions = new AtomicLong();
+    private AtomicLong failedSessions = new AtomicLong();
+    private List<long[]> latencies = new ArrayList<>();
+
+    public LoadGenerator(int port) {
+        this.port = port;
+    }
+
+    public static void main(String[] args) throws InterruptedException {
+        int port = args.length > 0 ? Integer.parseInt(args[0]) : GameServer.DEFAULT_PORT;
+        int players = args.length > 1 ? Integer.parseInt(args[1]) : 100;
+        int gamesPerPlayer = args.length > 2 ? Integer.parseInt(args[2]) : 5;
+        long seed = args.length > 3 ? Long.parseLong(args[3]) : 1;
+        new LoadGenerator(port).run(players, gamesPerPlayer, seed);
+    }
+
+    // Runs every player until all of their games are finished, then prints the report
+    public void run(int players, int gamesPerPlayer, long seed) throws InterruptedException {
+        System.out.printf("%d players x %d games against port %d%n", players, gamesPerPlayer, port);
+        long start = System.nanoTime();
+        try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            for (int i = 0; i < players; i++) {
+                Random random = new Random(seed * 1_000_003 + i);
+                executor.execute(() -> play(gamesPerPlayer, random));
+            }
+        }
+        double seconds = (System.nanoTime() - start) / 1e9;
+
+        long sessions = finishedSessions.get();
+        System.out.printf("%d sessions in %.1f s (%.1f sessions/sec), %d failed%n", sessions, seconds,
+                sessions / seconds, failedSessions.get());
+        long[] all = latencies.stream().flatMapToLong(Arrays::stream).sorted().toArray();
+        if (all.length > 0) {
+            System.out.printf("Move latency over %d moves: p50=%.2f ms p90=%.2f ms p99=%.2f ms max=%.2f ms%n",
+                    all.length, percentile(all, 50), percentile(all, 90), percentile(all, 99),
+                    all[all.length - 1] / 1e6);
+        }
+    }
+
+    // Plays the given number of games, one session each
+    private void play(int gameCount, Random random) {
+        long[] times = new long[64];
+        int timeCount = 0;
+        for (int g = 0; g < gameCount; g++) {
+            try (Socket socket = new Socket(InetAddress.getLoopbackAddress(), port);
+                 BufferedReader in = new BufferedReader(new InputStreamReader(socket.getInputStream(),
+                         StandardCharsets.US_ASCII));
+                 PrintWriter out = new PrintWriter(socket.getOutputStream(), false, StandardCharsets.US_ASCII)) {
+                socket.setTcpNoDelay(true);
+                send(out, "NEW SINGLE");
+                expect(in, "OK NEW");
+
+                boolean[] taken = new boolean[Connect4.DEFAULT_BOARD_SIZE * Connect4.DEFAULT_BOARD_SIZE];
+                String status = "TURN 1";
+                while (status.startsWith("TURN")) {
+                    int cell;
+                    do {
+                        cell = random.nextInt(taken.length);
+                    } while (taken[cell]);
+                    taken[cell] = true;
+
+                    long moveStart = System.nanoTime();
+                    send(out, "MOVE " + cell / Connect4.DEFAULT_BOARD_SIZE + " " + cell % Connect4.DEFAULT_BOARD_SIZE);
+                    expect(in, "OK MOVE");
+                    // Read the engine's reply (if any) up to the status line
+                    status = in.readLine();
+                    if (status != null && status.startsWith("AI ")) {
+                        String[] parts = status.split(" ");
+                        int row = Integer.parseInt(parts[1]);
+                        int col = Integer.parseInt(parts[2]);
+                        taken[row * Connect4.DEFAULT_BOARD_SIZE + col] = true;
+                        status = in.readLine();
+                    }
+                    if (status == null) {
+                        throw new IOException("Connection closed");
+                    }
+                    if (timeCount == times.length) {
+                        times = Arrays.copyOf(times, times.length * 2);
+                    }
+                    times[timeCount++] = System.nanoTime() - moveStart;
+                }
+
+                send(out, "QUIT");
+                expect(in, "BYE");
+                finishedSessions.incrementAndGet();
+            } catch (IOException e) {
+                failedSessions.incrementAndGet();
+            }
+        }
+        synchronized (latencies) {
+            latencies.add(Arrays.copyOf(times, timeCount));
+        }
+    }
+
+    // Sends one command line
+    private static void send(PrintWriter out, String command) {
+        out.println(command);
+        out.flush();
+    }
+
+    // Reads one reply line and fails unless it starts with the expected text
+    private static void expect(BufferedReader in, String expected) throws IOException {
+        String line = in.readLine();
+        if (line == null || !line.startsWith(expected)) {
+            throw new IOException("Expected " + expected + " but got " + line);
+        }
+    }
+
+    // Returns the given percentile of sorted nanosecond times, in milliseconds
+    private static double percentile(long[] sorted, double percent) {
+        int index = (int) Math.ceil(percent / 100 * sorted.length) - 1;
+        return sorted[Math.max(0, index)] / 1e6;
+    }
+}
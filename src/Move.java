@@ -5,6 +5,8 @@ public class Move {
     public int col;
     // Score associated with move (for minimax algorithm)
     public int score;
+    // Packed value meaning "no move"
+    public static final int NONE = pack(-1, 0);
 
     // Initialize instance variables
     public Move(int row, int col, int score) {
@@ -12,4 +14,31 @@ public class Move {
         this.col = col;
         this.score = score;
     }
-}
\ No newline at end of file
+
+    // Packs a move (bit index of the cell, -1 for none) and its score into a single int, so search code can pass
+    // moves around without allocating Move objects
+    // The cell takes the low 8 bits and the score the remaining 24 bits, so scores must stay within +/- 8 million
+    public static int pack(int cell, int score) {
+        return (score << 8) | (cell & 0xFF);
+    }
+
+    // Returns the cell of a packed move, or -1 if there is none
+    public static int cellOf(int packed) {
+        int cell = packed & 0xFF;
+        return cell == 0xFF ? -1 : cell;
+    }
+
+    // Returns the score of a packed move
+    public static int scoreOf(int packed) {
+        return packed >> 8;
+    }
+
+    // Creates a Move object from a packed move, or returns null if the packed move has no cell
+    public static Move unpack(int packed) {
+        int cell = cellOf(packed);
+        if (cell == -1) {
+            return null;
+        }
+        return new Move(BitBoard.rowOf(cell), BitBoard.colOf(cell), scoreOf(packed));
+    }
+}
@@ -0,0 +1,122 @@
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+public class OpeningBook {
+    // Precomputed best moves of the first few plies, looked up instead of searching
+    // The book file is an array of fixed-size records (position key, move, score) sorted by key, and is memory-mapped
+    // rather than read: a lookup is a binary search straight in the mapped file, so nothing is loaded onto the heap or
+    // parsed at startup, and every game that opens the same file shares one mapping (and the OS page cache)
+    // A program that needs a fast startup (CommandLineEngine) can ask for books up to SMALL_BOOK_BYTES to be read onto
+    // the heap instead: the first mapping in a JVM sets up the JDK's mapped memory support, which takes tens of
+    // milliseconds, far longer than reading a small book
+    // Record layout (big-endian): long key (Engine.tableKey of the position), int move (bit index, in the orientation
+    // of the position's canonical symmetry), int score; rotations and reflections of a position share one record
+    // Book files are written by OpeningBookGenerator
+
+    // Default location of the book file
+    public static final String DEFAULT_PATH = "Resources/openings.book";
+    // Bytes used by one record
+    public static final int RECORD_BYTES = 8 + 4 + 4;
+    // Largest book file read rather than mapped when a heap copy is preferred
+    public static final long SMALL_BOOK_BYTES = 1024 * 1024;
+
+    // Books opened so far, by file path, so every game opening the same file gets the same book
+    private static Map<Path, OpeningBook> openBooks = new HashMap<>();
+
+    // Instance variables
+    // Mapped (or read) contents of the book file, and the number of records in it
+    private ByteBuffer buffer;
+    private int records;
+
+    private OpeningBook(ByteBuffer buffer) {
+        this.buffer = buffer;
+        this.records = buffer.capacity() / RECORD_BYTES;
+    }
+
+    // Returns the book stored in the given file, mapping it the first time it is opened
+    public static OpeningBook open(String path) throws IOException {
+        return open(path, false);
+    }
+
+    // Same, but if preferHeap is true and the file is at most SMALL_BOOK_BYTES, it is read onto the heap instead of
+    // mapped (a book already opened keeps the contents it was opened with)
+    public static synchronized OpeningBook open(String path, boolean preferHeap) throws IOException {
+        Path file = Path.of(path).toAbsolutePath().normalize();
+        OpeningBook book = openBooks.get(file);
+        if (book == null) {
+            try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+                if (preferHeap && channel.size() <= SMALL_BOOK_BYTES) {
+                    ByteBuffer contents = ByteBuffer.allocate((int) channel.size());
+                    while (contents.hasRemaining()) {
+                        if (channel.read(contents) < 0) {
+                            throw new IOException("Book file ended early: " + file);
+                        }
+                    }
+                    book = new OpeningBook(contents.flip());
+                } else {
+                    book = new OpeningBook(channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()));
+                }
+            }
+            openBooks.put(file, book);
+        }
+        return book;
+    }
+
+    // Returns the book move of the given position, or null if the position isn't in the book
+    // Safe to call from several threads at once (only absolute reads of the buffer are used)
+    public Move lookup(BitBoard board, boolean isMaxing) {
+        long key = Engine.tableKey(board, isMaxing);
+        int low = 0;
+        int high = records - 1;
+        while (low <= high) {
+            int middle = (low + high) >>> 1;
+            long middleKey = buffer.getLong(middle * RECORD_BYTES);
+            if (middleKey < key) {
+                low = middle + 1;
+            } else if (middleKey > key) {
+                high = middle - 1;
+            } else {
+                int cell = Engine.fromCanonical(buffer.getInt(middle * RECORD_BYTES + 8), board.canonicalSymmetry());
+                int score = buffer.getInt(middle * RECORD_BYTES + 12);
+                return new Move(BitBoard.rowOf(cell), BitBoard.colOf(cell), score);
+            }
+        }
+        return null;
+    }
+
+    // Returns the number of positions in the book
+    public int size() {
+        return records;
+    }
+
+    // Writes a book file from parallel arrays of position keys, moves (bit indexes, already converted to the canonical
+    // orientation by Engine.toCanonical) and scores
+    public static void write(String path, long[] keys, int[] moves, int[] scores) throws IOException {
+        // Sort the records by key
+        Integer[] order = new Integer[keys.length];
+        for (int i = 0; i < order.length; i++) {
+            order[i] = i;
+        }
+        Arrays.sort(order, (a, b) -> Long.compare(keys[a], keys[b]));
+
+        ByteBuffer out = ByteBuffer.allocate(keys.length * RECORD_BYTES);
+        for (int i : order) {
+            out.putLong(keys[i]);
+            out.putInt(moves[i]);
+            out.putInt(scores[i]);
+        }
+        out.flip();
+        try (FileChannel channel = FileChannel.open(Path.of(path), StandardOpenOption.CREATE,
+                StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            while (out.hasRemaining()) {
+                channel.write(out);
+            }
+        }
+    }
+}
@@ -0,0 +1,73 @@
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+public class OpeningBookGenerator {
+    // Offline generator of the opening book file read by OpeningBook
+    // Searches every position of the first few plies to a fixed depth, and writes the best move of each one to the
+    // book; each position is searched once however many move orders reach it, and only one rotation or reflection
+    // of it
+    // Usage: java OpeningBookGenerator [plies] [depth] [output file]
+    // e.g. the default book, all positions after 0, 1 and 2 moves searched to depth 6:
+    //   java OpeningBookGenerator 3 6 Resources/openings.book
+
+    public static void main(String[] args) throws IOException {
+        int plies = args.length > 0 ? Integer.parseInt(args[0]) : 3;
+        int depth = args.length > 1 ? Integer.parseInt(args[1]) : 6;
+        String path = args.length > 2 ? args[2] : OpeningBook.DEFAULT_PATH;
+
+        Connect4 game = new Connect4(false);
+        Engine engine = new Engine(game);
+
+        // Collect the positions of each ply, player 1 moving first
+        Map<Long, BitBoard> positions = new LinkedHashMap<>();
+        List<BitBoard> ply = new ArrayList<>();
+        ply.add(new BitBoard());
+        for (int p = 0; p < plies; p++) {
+            boolean isMaxing = p % 2 == 1;
+            List<BitBoard> next = new ArrayList<>();
+            for (BitBoard board : ply) {
+                if (positions.putIfAbsent(Engine.tableKey(board, isMaxing), board) != null) {
+                    continue;
+                }
+                long empty = board.empty();
+                while (empty != 0 && p + 1 < plies) {
+                    int cell = Long.numberOfTrailingZeros(empty);
+                    empty &= empty - 1;
+                    BitBoard child = board.copy();
+                    child.place(cell, isMaxing ? 2 : 1);
+                    if (!child.hasWin(isMaxing ? 2 : 1, game.WIN_LENGTH)) {
+                        next.add(child);
+                    }
+                }
+            }
+            ply = next;
+        }
+
+        // Search every position
+        long[] keys = new long[positions.size()];
+        int[] moves = new int[positions.size()];
+        int[] scores = new int[positions.size()];
+        long start = System.currentTimeMillis();
+        int i = 0;
+        for (Map.Entry<Long, BitBoard> position : positions.entrySet()) {
+            BitBoard board = position.getValue();
+            // Player 2 (maximizing) is to move when an odd number of pieces is on the board
+            boolean isMaxing = Long.bitCount(board.pieces[1] | board.pieces[2]) % 2 == 1;
+            Move move = engine.search(board, depth, isMaxing);
+            keys[i] = position.getKey();
+            moves[i] = Engine.toCanonical(BitBoard.cell(move.row, move.col), board.canonicalSymmetry());
+            scores[i] = move.score;
+            i++;
+            if (i % 100 == 0) {
+                System.out.printf("%d / %d positions (%d s)%n", i, keys.length,
+                        (System.currentTimeMillis() - start) / 1000);
+            }
+        }
+
+        OpeningBook.write(path, keys, moves, scores);
+        System.out.printf("Wrote %d positions to %s%n", keys.length, path);
+    }
+}
@@ -0,0 +1,7 @@
+public interface SearchListener {
+    // Receives progress updates from a running engine search
+    // Called on the engine's search thread, so implementations must hand any UI work over to the right thread
+
+    // Called every time the search finishes a depth, with the best move so far and the nodes searched so far
+    void onDepthFinished(int depth, Move bestMove, long nodes);
+}
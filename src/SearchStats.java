@@ -0,0 +1,65 @@
+public class SearchStats {
+    // Statistics of one search (one engine move), published to EngineMetrics after every search
+
+    // Instance variables
+    // What answered the search: "minimax", "engine", "solver" (EndgameSolver), "threats" (ThreatSearch) or "book"
+    // (OpeningBook)
+    public String source;
+    // Number of positions visited, positions scored without searching deeper (game over, depth limit or full board),
+    // and calls to evaluate (or reads of the incremental evaluation)
+    public long nodes;
+    public long leaves;
+    public long evaluations;
+    // Number of beta cutoffs, and how many of them came from the first move searched (-1 if not tracked)
+    public long cutoffs = -1;
+    public long firstMoveCutoffs = -1;
+    // Transposition table probes and hits (-1 if no table was used)
+    public long tableProbes = -1;
+    public long tableHits = -1;
+    // Depth of the deepest finished iteration, and deepest ply visited
+    public int depth;
+    public int maxPly;
+    // Wall clock time of the search in nanoseconds
+    public long nanos;
+
+    public SearchStats(String source) {
+        this.source = source;
+    }
+
+    // Returns the number of nodes searched per second
+    public double nodesPerSecond() {
+        return nanos == 0 ? 0 : nodes * 1e9 / nanos;
+    }
+
+    // Returns the fraction of interior (non-leaf) nodes that ended with a beta cutoff, or -1 if not tracked
+    public double cutoffRatio() {
+        long interior = nodes - leaves;
+        return cutoffs < 0 || interior <= 0 ? -1 : (double) cutoffs / interior;
+    }
+
+    // Returns the fraction of cutoffs caused by the first move searched (a measure of move ordering), or -1
+    public double firstMoveCutoffRatio() {
+        return firstMoveCutoffs < 0 || cutoffs <= 0 ? -1 : (double) firstMoveCutoffs / cutoffs;
+    }
+
+    // Returns the fraction of transposition table probes that found the position, or -1 if no table was used
+    public double tableHitRate() {
+        return tableProbes <= 0 ? -1 : (double) tableHits / tableProbes;
+    }
+
+    // Returns the statistics as one key=value log line (ratios that weren't tracked are left out)
+    public String toLogLine() {
+        String line = String.format("search source=%s depth=%d maxPly=%d nodes=%d leaves=%d evals=%d nps=%.0f ms=%.3f",
+                source, depth, maxPly, nodes, leaves, evaluations, nodesPerSecond(), nanos / 1e6);
+        if (cutoffRatio() >= 0) {
+            line += String.format(" cutoffRatio=%.3f", cutoffRatio());
+        }
+        if (firstMoveCutoffRatio() >= 0) {
+            line += String.format(" firstMoveCutoffRatio=%.3f", firstMoveCutoffRatio());
+        }
+        if (tableHitRate() >= 0) {
+            line += String.format(" ttProbes=%d ttHitRate=%.3f", tableProbes, tableHitRate());
+        }
+        return line;
+    }
+}
@@ -0,0 +1,162 @@
+public class ThreatSearch {
+    // Threat-space search: looks for a forced win made only of threats
+    // The attacker only plays moves that create an immediate winning cell (a threat), and the defender's reply to a
+    // single threat is then forced: block it, or lose on the next move; a move that creates two threats at once wins
+    // outright, because only one of them can be blocked
+    // With one forced reply per attacker move, the tree is tiny compared to a full-width search, so forced wins many
+    // plies deep are found in a few thousand nodes
+    // The defender's forced blocks can create threats of their own; the attacker then has to block them first (and
+    // only continues if that block is itself a threat)
+
+    // Default maximum number of attacker moves in a winning sequence
+    public static final int DEFAULT_MAX_ATTACKS = 16;
+    // Default maximum number of nodes searched before giving up
+    public static final long DEFAULT_MAX_NODES = 200_000;
+
+    // Instance variables
+    // Streak length needed to win
+    private int winLength;
+    // Board being searched
+    private BitBoard board;
+    // Number of nodes visited by the last search, and the limit after which it gives up
+    public long nodes;
+    private long maxNodes = DEFAULT_MAX_NODES;
+    // Set from another thread to make the current search stop as soon as possible
+    private volatile boolean stopRequested;
+    // Time (from System.currentTimeMillis) at which the current search must stop, and whether it ran out of time
+    private long deadline;
+    private boolean stopped;
+    // Winning sequence found by the last search (attacker and defender moves alternating, bit indexes), and its length
+    private int[] line = new int[2 * DEFAULT_MAX_ATTACKS + 3];
+    private int lineLength;
+    // Sequence being built while searching, one attacker and one defender move per level
+    private int[] path = new int[2 * DEFAULT_MAX_ATTACKS + 3];
+
+    public ThreatSearch(int winLength) {
+        this.winLength = winLength;
+    }
+
+    // Looks for a forced win of the given player, who is to move, made of at most DEFAULT_MAX_ATTACKS threats
+    // Returns the first move of the winning sequence (bit index), or -1 if none was found
+    // The board is modified during the search but restored to its original state before returning
+    public int findWin(BitBoard board, int player) {
+        return findWin(board, player, DEFAULT_MAX_ATTACKS);
+    }
+
+    public int findWin(BitBoard board, int player, int maxAttacks) {
+        return findWin(board, player, maxAttacks, Long.MAX_VALUE);
+    }
+
+    // Same, but gives up (returning -1) once about the given number of milliseconds have passed, or if cancelled
+    public int findWin(BitBoard board, int player, int maxAttacks, long timeMs) {
+        this.board = board;
+        long now = System.currentTimeMillis();
+        deadline = timeMs >= Long.MAX_VALUE - now ? Long.MAX_VALUE : now + timeMs;
+        stopped = false;
+        nodes = 0;
+        lineLength = 0;
+        maxAttacks = Math.min(maxAttacks, DEFAULT_MAX_ATTACKS);
+        if (attack(player, maxAttacks, 0)) {
+            return line[0];
+        }
+        return -1;
+    }
+
+    // Asks the running search to stop as soon as possible (it then returns -1)
+    // The request stays until clearCancel, so a cancel that comes before findWin is called still stops it
+    public void cancel() {
+        stopRequested = true;
+    }
+
+    // Forgets an earlier cancel request; call it when the search that may use this one starts, not when findWin does
+    public void clearCancel() {
+        stopRequested = false;
+    }
+
+    // Returns the winning sequence found by the last search (bit indexes, attacker first, ending with the winning
+    // move), or an empty array if none was found
+    public int[] winningLine() {
+        int[] copy = new int[lineLength];
+        System.arraycopy(line, 0, copy, 0, lineLength);
+        return copy;
+    }
+
+    // Returns true if the attacker (to move) can force a win with at most the given number of threats
+    private boolean attack(int attacker, int attacksLeft, int ply) {
+        nodes++;
+        long empty = board.empty();
+        int defender = 3 - attacker;
+
+        // Win right away if possible
+        long wins = BitBoard.winningCells(board.pieces[attacker], empty, winLength);
+        if (wins != 0) {
+            path[ply] = Long.numberOfTrailingZeros(wins);
+            saveLine(ply + 1);
+            return true;
+        }
+        if (attacksLeft == 0 || nodes > maxNodes) {
+            return false;
+        }
+        // Check the clock every 1024 nodes; once out of time or asked to stop, unwind without searching any more
+        if ((nodes & 1023) == 0 && (stopRequested || System.currentTimeMillis() >= deadline)) {
+            stopped = true;
+        }
+        if (stopped) {
+            return false;
+        }
+
+        // If the defender threatens to win, the attacker has to block (two threats can't both be blocked)
+        long candidates = empty;
+        long defenderThreats = BitBoard.winningCells(board.pieces[defender], empty, winLength);
+        if (defenderThreats != 0) {
+            if (Long.bitCount(defenderThreats) > 1) {
+                return false;
+            }
+            candidates = defenderThreats;
+        }
+
+        while (candidates != 0) {
+            int cell = Long.numberOfTrailingZeros(candidates);
+            candidates &= candidates - 1;
+            long bit = 1L << cell;
+
+            // Only moves that create a threat are searched
+            long threats = BitBoard.winningCells(board.pieces[attacker] | bit, empty ^ bit, winLength);
+            if (threats == 0) {
+                continue;
+            }
+            path[ply] = cell;
+            board.place(cell, attacker);
+            boolean won;
+            if (Long.bitCount(threats) > 1) {
+                // Two threats: the defender (who has no immediate win) can only block one of them
+                int block = Long.numberOfTrailingZeros(threats);
+                path[ply + 1] = block;
+                path[ply + 2] = Long.numberOfTrailingZeros(threats & (threats - 1));
+                saveLine(ply + 3);
+                won = true;
+            } else {
+                // One threat: the defender's block is forced
+                int block = Long.numberOfTrailingZeros(threats);
+                path[ply + 1] = block;
+                board.place(block, defender);
+                won = attack(attacker, attacksLeft - 1, ply + 2);
+                board.remove(block, defender);
+            }
+            board.remove(cell, attacker);
+            if (won) {
+                return true;
+            }
+            if (stopped) {
+                return false;
+            }
+        }
+        return false;
+    }
+
+    // Keeps the sequence built so far as the winning line
+    private void saveLine(int length) {
+        System.arraycopy(path, 0, line, 0, length);
+        lineLength = length;
+    }
+}
@@ -0,0 +1,293 @@
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class Tournament {
+    // Headless engine-vs-engine self-play, for testing engine changes at scale without the viewer
+    // Engine A and engine B (each with its own eval weights) play N games, swapping colors every game, on all cores at
+    // once; every game starts with a few random moves so the games don't all repeat the same line
+    // Each game has its own Connect4, and each worker thread its own two Engines, so nothing is shared between games
+    // Results are streamed to a CSV file as games finish, and a summary is printed at the end: games/sec,
+    // wins/draws/losses of A with its Elo difference and 95% error bars, and per-move latency percentiles
+    // Usage: java Tournament [key=value ...], keys:
+    //   games=200 threads=<cores> depth=0 timeMs=50 opening=4 seed=1 hashMb=4 csv=tournament.csv
+    //   weightsA=1,2,5,10,50,100 weightsB=... (scores of 1, 2, 3-in-a-row with 1 and 2 open ends), optionally
+    //   followed by the scores of gapped streaks of 2 and 3 pieces, e.g. weightsB=1,2,5,10,50,100,0,0
+    //   book=<opening book file> (used by both engines in timed searches, off by default; the book was built with
+    //   the default weights, so it can't be combined with weightsA or weightsB)
+    //   records=<game record file> (every game is appended to it, see GameRecord; off by default)
+    // With depth > 0 every move is a fixed-depth search, otherwise a timed search of timeMs
+
+    // Instance variables
+    // Settings
+    private int games = 200;
+    private int threads = Runtime.getRuntime().availableProcessors();
+    private int depth = 0;
+    private long timeMs = 50;
+    private int openingMoves = 4;
+    private long seed = 1;
+    private int hashMb = 4;
+    private String csvPath = "tournament.csv";
+    private int[] weightsA;
+    private int[] weightsB;
+    private String bookPath;
+    private String recordsPath;
+    // Next game number to play, and results of engine A: wins, draws, losses
+    private AtomicInteger nextGame = new AtomicInteger();
+    private AtomicInteger wins = new AtomicInteger();
+    private AtomicInteger draws = new AtomicInteger();
+    private AtomicInteger losses = new AtomicInteger();
+    // Search time of every engine move in nanoseconds, one list per worker thread
+    private List<long[]> latencies = new ArrayList<>();
+    // CSV output, written by one game at a time
+    private PrintWriter csv;
+    // Log of every game played, or null if not recorded
+    private GameRecordWriter records;
+
+    public static void main(String[] args) throws IOException, InterruptedException {
+        EngineMetrics.register();
+        Tournament tournament = new Tournament();
+        for (String arg : args) {
+            tournament.set(arg);
+        }
+        tournament.run();
+    }
+
+    // Applies one key=value setting
+    private void set(String arg) {
+        String[] parts = arg.split("=", 2);
+        if (parts.length != 2) {
+            throw new IllegalArgumentException("Expected key=value: " + arg);
+        }
+        String value = parts[1];
+        switch (parts[0]) {
+            case "games" -> games = Integer.parseInt(value);
+            case "threads" -> threads = Math.max(1, Integer.parseInt(value));
+            case "depth" -> depth = Integer.parseInt(value);
+            case "timeMs" -> timeMs = Long.parseLong(value);
+            case "opening" -> openingMoves = Integer.parseInt(value);
+            case "seed" -> seed = Long.parseLong(value);
+            case "hashMb" -> hashMb = Integer.parseInt(value);
+            case "csv" -> csvPath = value;
+            case "weightsA" -> weightsA = parseWeights(value);
+            case "weightsB" -> weightsB = parseWeights(value);
+            case "book" -> bookPath = value;
+            case "records" -> recordsPath = value;
+            default -> throw new IllegalArgumentException("Unknown setting: " + parts[0]);
+        }
+    }
+
+    // Plays every game and prints the summary
+    private void run() throws IOException, InterruptedException {
+        if (bookPath != null && (weightsA != null || weightsB != null)) {
+            // Book moves were scored with the default weights, so they would skew a weights comparison
+            throw new IllegalArgumentException("book can't be used with weightsA or weightsB");
+        }
+        csv = new PrintWriter(new FileWriter(csvPath));
+        csv.println("game,colorA,winner,resultA,moves,millis,opening");
+        csv.flush();
+        if (recordsPath != null) {
+            records = new GameRecordWriter(recordsPath);
+        }
+
+        System.out.printf("Playing %d games on %d threads (%s per move)%n", games, threads,
+                depth > 0 ? "depth " + depth : timeMs + " ms");
+        long start = System.nanoTime();
+        ExecutorService pool = Executors.newFixedThreadPool(threads);
+        for (int i = 0; i < threads; i++) {
+            pool.execute(this::playGames);
+        }
+        pool.shutdown();
+        pool.awaitTermination(Long.MAX_VALUE, TimeUnit.DAYS);
+        double seconds = (System.nanoTime() - start) / 1e9;
+        csv.close();
+        if (records != null) {
+            records.close();
+        }
+
+        printSummary(seconds);
+    }
+
+    // Worker loop: plays games until all of them have been started
+    private void playGames() {
+        Engine engineA = new Engine(weightedGame(weightsA), hashMb);
+        Engine engineB = new Engine(weightedGame(weightsB), hashMb);
+        if (bookPath != null) {
+            // Every worker gets the same mapped book
+            try {
+                OpeningBook book = OpeningBook.open(bookPath);
+                engineA.setOpeningBook(book);
+                engineB.setOpeningBook(book);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+        long[] times = new long[1024];
+        int timeCount = 0;
+
+        int gameNumber;
+        while ((gameNumber = nextGame.getAndIncrement()) < games) {
+            // Engine A plays player 1 in even games and player 2 in odd games
+            int colorA = gameNumber % 2 == 0 ? 1 : 2;
+            Random random = new Random(seed * 1_000_003 + gameNumber / 2);
+            // Replay random openings until one leaves a game to play
+            Connect4 game;
+            String opening;
+            do {
+                game = new Connect4(false);
+                opening = playOpening(game, random);
+            } while (game.gameOver);
+
+            long gameStart = System.nanoTime();
+            int moves = openingMoves;
+            while (!game.gameOver) {
+                int player = game.isTurnP1 ? 1 : 2;
+                Engine engine = player == colorA ? engineA : engineB;
+                boolean isMaxing = player == 2;
+
+                long moveStart = System.nanoTime();
+                Move move = depth > 0 ? engine.search(game.bitBoard, depth, isMaxing)
+                        : engine.searchTimed(game.bitBoard, timeMs, isMaxing);
+                if (timeCount == times.length) {
+                    times = Arrays.copyOf(times, times.length * 2);
+                }
+                times[timeCount++] = System.nanoTime() - moveStart;
+
+                game.takeTurn(move.row, move.col);
+                moves++;
+            }
+            long millis = (System.nanoTime() - gameStart) / 1_000_000;
+
+            // The winner is the player to move when the game ended (takeTurn doesn't switch turns after a win)
+            int winner = game.gameOver && !game.isDraw ? (game.isTurnP1 ? 1 : 2) : 0;
+            String resultA;
+            if (winner == 0) {
+                resultA = "draw";
+                draws.incrementAndGet();
+            } else if (winner == colorA) {
+                resultA = "win";
+                wins.incrementAndGet();
+            } else {
+                resultA = "loss";
+                losses.incrementAndGet();
+            }
+            synchronized (csv) {
+                csv.println(gameNumber + "," + colorA + "," + winner + "," + resultA + "," + moves + "," + millis
+                        + "," + opening);
+                csv.flush();
+            }
+            if (records != null) {
+                try {
+                    records.append(GameRecord.of(game));
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            }
+        }
+
+        synchronized (latencies) {
+            latencies.add(Arrays.copyOf(times, timeCount));
+        }
+    }
+
+    // Plays random opening moves and returns them as cells (row * size + col) separated by spaces
+    // Both games of a color-swapped pair use the same random generator seed, so they start from the same opening
+    private String playOpening(Connect4 game, Random random) {
+        StringBuilder opening = new StringBuilder();
+        for (int i = 0; i < openingMoves && !game.gameOver; i++) {
+            int row;
+            int col;
+            do {
+                row = random.nextInt(game.BOARD_SIZE);
+                col = random.nextInt(game.BOARD_SIZE);
+            } while (game.board[row][col] != 0);
+            game.takeTurn(row, col);
+            if (opening.length() > 0) {
+                opening.append(' ');
+            }
+            opening.append(row * game.BOARD_SIZE + col);
+        }
+        return opening.toString();
+    }
+
+    // Prints games/sec, the results of engine A with its Elo difference, and the move latency percentiles
+    private void printSummary(double seconds) {
+        int w = wins.get();
+        int d = draws.get();
+        int l = losses.get();
+        int n = w + d + l;
+        System.out.printf("%d games in %.1f s (%.2f games/sec)%n", n, seconds, n / seconds);
+        System.out.printf("Engine A: +%d =%d -%d%n", w, d, l);
+
+        // Elo from the score fraction, with a 95% interval from the standard error of the per-game score
+        // (skipped when no game finished, since there is no score)
+        if (n > 0) {
+            double score = (w + 0.5 * d) / n;
+            double variance = (w * Math.pow(1 - score, 2) + d * Math.pow(0.5 - score, 2) + l * Math.pow(score, 2)) / n;
+            double margin = 1.96 * Math.sqrt(variance / n);
+            double elo = elo(score);
+            System.out.printf("Elo difference: %.1f +/- %.1f (score %.1f%%)%n", elo,
+                    (elo(score + margin) - elo(score - margin)) / 2, score * 100);
+        }
+
+        long[] all = latencies.stream().flatMapToLong(Arrays::stream).sorted().toArray();
+        if (all.length > 0) {
+            System.out.printf("Move latency over %d moves: p50=%.2f ms p90=%.2f ms p99=%.2f ms max=%.2f ms%n",
+                    all.length, percentile(all, 50), percentile(all, 90), percentile(all, 99),
+                    all[all.length - 1] / 1e6);
+        }
+        System.out.println("Results written to " + csvPath);
+    }
+
+    // Returns the Elo difference that gives the expected score (clamped to stay finite at 0% and 100%)
+    private static double elo(double score) {
+        score = Math.max(0.001, Math.min(0.999, score));
+        return -400 * Math.log10(1 / score - 1);
+    }
+
+    // Returns the given percentile of sorted nanosecond times, in milliseconds
+    private static double percentile(long[] sorted, double percent) {
+        int index = (int) Math.ceil(percent / 100 * sorted.length) - 1;
+        return sorted[Math.max(0, index)] / 1e6;
+    }
+
+    // Creates a game whose tiered scores are the given weights (1, 2, 3-in-a-row with 1 and 2 open ends, then the
+    // gapped streaks of 2 and 3 pieces if given), or the default scores if null
+    private static Connect4 weightedGame(int[] weights) {
+        Connect4 game = new Connect4(false);
+        if (weights != null) {
+            int tiered = 2 * (Connect4.DEFAULT_WIN_LENGTH - 1);
+            for (int i = 0; i < tiered; i++) {
+                game.setTieredScore(i / 2 + 1, i % 2 + 1, weights[i]);
+            }
+            for (int i = tiered; i < weights.length; i++) {
+                game.setGappedScore(i - tiered + 2, weights[i]);
+            }
+        }
+        return game;
+    }
+
+    // Parses comma separated weights
+    private static int[] parseWeights(String value) {
+        String[] parts = value.split(",");
+        int tiered = 2 * (Connect4.DEFAULT_WIN_LENGTH - 1);
+        int withGapped = tiered + Connect4.DEFAULT_WIN_LENGTH - 2;
+        if (parts.length != tiered && parts.length != withGapped) {
+            throw new IllegalArgumentException("Expected " + tiered + " or " + withGapped + " weights: " + value);
+        }
+        int[] weights = new int[parts.length];
+        for (int i = 0; i < parts.length; i++) {
+            weights[i] = Integer.parseInt(parts[i].trim());
+        }
+        return weights;
+    }
+}
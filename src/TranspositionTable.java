@@ -0,0 +1,100 @@
+import java.util.Arrays;
+
+public class TranspositionTable {
+    // Fixed-size hash table of search results, keyed by the Zobrist hash of the position
+    // Entries are stored in two parallel primitive arrays (no objects per entry), grouped in buckets of two slots:
+    // the first slot keeps the deepest result seen for its bucket, the second slot always takes the newest result
+    // The table is shared by all search threads without locks: the depth, bound, score and best move of an entry are
+    // packed into one long, and the key array holds key XOR data, so an entry torn by two threads writing at once
+    // no longer matches its key and is simply treated as a miss
+
+    // Bound types of a stored score
+    public static final int EXACT = 0;
+    public static final int LOWER = 1; // the real score is at least the stored score
+    public static final int UPPER = 2; // the real score is at most the stored score
+    // Value returned by probe when the position isn't stored (every stored entry has its valid bit set)
+    public static final long NONE = 0;
+    // Bytes used by one entry (key + packed data)
+    public static final int ENTRY_BYTES = 8 + 8;
+    // Bit set in the data of every stored entry
+    private static final long VALID = 1L << 62;
+
+    // Instance variables
+    // Parallel arrays of entries, slot 2 * i and 2 * i + 1 make up bucket i
+    private long[] keys;
+    private long[] data;
+    // Mask used to turn a hash into a bucket index (number of buckets is a power of two)
+    private int bucketMask;
+
+    // Creates a table that uses at most the given number of megabytes
+    public TranspositionTable(int sizeMb) {
+        long entries = Math.max(2, (long) sizeMb * 1024 * 1024 / ENTRY_BYTES);
+        // Round the number of buckets down to a power of two
+        int buckets = Integer.highestOneBit((int) Math.min(entries / 2, 1 << 30));
+        bucketMask = buckets - 1;
+        keys = new long[buckets * 2];
+        data = new long[buckets * 2];
+    }
+
+    // Returns the packed data stored for the given key, or NONE if the position isn't stored
+    // Use the static score, depth, bound and move methods to read the fields of the returned data
+    public long probe(long key) {
+        int slot = bucketOf(key);
+        for (int i = slot; i < slot + 2; i++) {
+            long entry = data[i];
+            if (entry != NONE && (keys[i] ^ entry) == key) {
+                return entry;
+            }
+        }
+        return NONE;
+    }
+
+    // Stores a search result, replacing the depth-preferred slot if this result is at least as deep (or is the same
+    // position), and the always-replace slot otherwise
+    public void store(long key, int depth, int score, int bound, int move) {
+        int slot = bucketOf(key);
+        long existing = data[slot];
+        if (existing != NONE && (keys[slot] ^ existing) != key && depth < depth(existing)) {
+            slot++;
+        }
+        long entry = VALID | ((long) (move + 1) << 42) | ((long) bound << 40) | ((long) depth << 32)
+                | (score & 0xFFFFFFFFL);
+        data[slot] = entry;
+        keys[slot] = key ^ entry;
+    }
+
+    // Getters for the fields of packed data returned by probe
+    public static int score(long entry) {
+        return (int) entry;
+    }
+
+    public static int depth(long entry) {
+        return (int) (entry >>> 32) & 0xFF;
+    }
+
+    public static int bound(long entry) {
+        return (int) (entry >>> 40) & 0x3;
+    }
+
+    // Returns the best move (cell index, up to 16 bits so large GridBoard cells fit) of the entry, or -1 if none
+    // was stored
+    public static int move(long entry) {
+        return ((int) (entry >>> 42) & 0xFFFF) - 1;
+    }
+
+    // Empties the table
+    public void clear() {
+        Arrays.fill(keys, 0);
+        Arrays.fill(data, NONE);
+    }
+
+    // Returns the number of entries the table can hold
+    public int capacity() {
+        return keys.length;
+    }
+
+    // Returns the first slot of the bucket of the given key
+    private int bucketOf(long key) {
+        return ((int) (key ^ (key >>> 32)) & bucketMask) * 2;
+    }
+}